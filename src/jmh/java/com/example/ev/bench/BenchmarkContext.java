@@ -0,0 +1,78 @@
+package com.example.ev.bench;
+
+import com.example.ev.EvChargerFinderApplication;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The real application context with both upstream RestTemplates replaced by one fixture
+ * template. Route and tile caches are off so every plan does its full work.
+ */
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * Runs after the configuration classes are parsed, so the HttpConfig templates exist to be replaced.
+     */
+    private static final class FixtureSwap implements BeanDefinitionRegistryPostProcessor {
+
+        private final FixtureRestTemplate fixtures;
+
+        FixtureSwap(FixtureRestTemplate fixtures) {
+            this.fixtures = fixtures;
+        }
+
+        @Override
+        public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) {
+            for (String name : new String[]{"googleRestTemplate", "chargepointRestTemplate"}) {
+                registry.removeBeanDefinition(name);
+                registry.registerBeanDefinition(name, new RootBeanDefinition(RestTemplate.class, () -> fixtures));
+            }
+        }
+
+        @Override
+        public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+        }
+    }
+
+    // Passed as command line arguments so they win over application.properties
+    private static String[] arguments(Map<String, Object> properties) {
+        return properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+    }
+
+    public static ConfigurableApplicationContext start(FixtureRestTemplate fixtures, Map<String, Object> overrides) {
+        // The planner logs to stdout on every step; keep it out of the JMH output
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("google.routes.api.key", "benchmark");
+        properties.put("chargepoint.map.api.url", "http://fixtures.local/map-prod/v2");
+        properties.put("google.routes.cache.enabled", false);
+        properties.put("chargepoint.tileCache.enabled", false);
+        properties.put("ev.fallbackSearch.parallelism", 1);
+        properties.put("logging.level.root", "WARN");
+        properties.put("spring.main.banner-mode", "off");
+        properties.putAll(overrides);
+
+        return new SpringApplicationBuilder(EvChargerFinderApplication.class)
+                .web(WebApplicationType.NONE)
+                .initializers(context -> ((BeanDefinitionRegistry) context.getBeanFactory()).registerBeanDefinition(
+                        "fixtureRestTemplates", new RootBeanDefinition(FixtureSwap.class, () -> new FixtureSwap(fixtures))))
+                .run(arguments(properties));
+    }
+}
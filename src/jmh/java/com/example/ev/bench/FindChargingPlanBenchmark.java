@@ -0,0 +1,72 @@
+package com.example.ev.bench;
+
+import com.example.ev.model.FindRequest;
+import com.example.ev.model.FindResponse;
+import com.example.ev.service.RouteService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end findChargingPlan against recorded upstream fixtures, through the real
+ * clients, parsers and planner wiring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class FindChargingPlanBenchmark {
+
+    @Param({"SHORT", "REGIONAL", "CROSS_COUNTRY"})
+    public Fixtures.Trip trip;
+
+    // Average distance between fixture stations along the route
+    @Param({"15"})
+    public double stationSpacingKm;
+
+    private ConfigurableApplicationContext context;
+    private RouteService routeService;
+    private FindRequest request;
+
+    @Setup
+    public void setUp() throws Exception {
+        request = trip.request();
+        double[] route = Fixtures.routeCoords(List.of(request.getOrigin(), request.getDestination()));
+        FixtureRestTemplate fixtures = new FixtureRestTemplate(Fixtures.stationsAlong(route, stationSpacingKm, 2.0, 42L));
+        context = BenchmarkContext.start(fixtures, Map.of());
+        routeService = context.getBean(RouteService.class);
+
+        FindResponse plan = routeService.findChargingPlan(request);
+        if (plan.getStops().isEmpty() || !plan.isReachableWithoutCharging()) {
+            throw new IllegalStateException("Fixture trip " + trip + " did not produce a charging plan");
+        }
+        System.err.println(trip + ": " + plan.getStops().size() + " stops, " + fixtures.getRouteCalls()
+                + " route calls and " + fixtures.getStationCalls() + " station calls per plan");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public FindResponse findChargingPlan() throws Exception {
+        return routeService.findChargingPlan(request);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.ev.bench;
+
+import com.example.ev.model.FindRequest;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RestTemplate that answers the Google Routes and ChargePoint calls from fixtures instead of the network.
+ * Responses are recorded on first use and replayed afterwards, so steady-state benchmark
+ * iterations measure only the planner and the real client code around the call.
+ */
+public class FixtureRestTemplate extends RestTemplate {
+
+    private final List<Fixtures.Station> stations;
+    private final Map<String, byte[]> recorded = new ConcurrentHashMap<>();
+    private final AtomicLong routeCalls = new AtomicLong();
+    private final AtomicLong stationCalls = new AtomicLong();
+
+    public FixtureRestTemplate(List<Fixtures.Station> stations) {
+        this.stations = stations;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> ResponseEntity<T> postForEntity(String url, Object request, Class<T> responseType, Object... uriVariables) {
+        Map<String, Object> payload = (Map<String, Object>) ((HttpEntity<?>) request).getBody();
+        byte[] body;
+        if (payload.containsKey("station_list")) {
+            stationCalls.incrementAndGet();
+            Map<String, Object> box = (Map<String, Object>) payload.get("station_list");
+            body = recorded.computeIfAbsent("stations:" + box, key -> Fixtures.stationListResponse(stations,
+                    number(box, "ne_lat"), number(box, "ne_lon"), number(box, "sw_lat"), number(box, "sw_lon"),
+                    number(box, "reference_lat"), number(box, "reference_lon"), (int) number(box, "page_size")));
+        } else {
+            routeCalls.incrementAndGet();
+            body = recorded.computeIfAbsent("route:" + payload, key -> Fixtures.routesResponse(Fixtures.routeCoords(waypoints(payload))));
+        }
+        return new ResponseEntity<>((T) body, HttpStatus.OK);
+    }
+
+    public long getRouteCalls() {
+        return routeCalls.get();
+    }
+
+    public long getStationCalls() {
+        return stationCalls.get();
+    }
+
+    private static double number(Map<String, Object> map, String key) {
+        return ((Number) map.get(key)).doubleValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<FindRequest.LatLng> waypoints(Map<String, Object> payload) {
+        List<FindRequest.LatLng> points = new ArrayList<>();
+        points.add(location(payload.get("origin")));
+        Object intermediates = payload.get("intermediates");
+        if (intermediates != null) {
+            for (Object intermediate : (List<Object>) intermediates) {
+                points.add(location(intermediate));
+            }
+        }
+        points.add(location(payload.get("destination")));
+        return points;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static FindRequest.LatLng location(Object waypoint) {
+        Map<String, Object> location = (Map<String, Object>) ((Map<String, Object>) waypoint).get("location");
+        Map<String, Object> latLng = (Map<String, Object>) location.get("latLng");
+        return Fixtures.latLng(number(latLng, "latitude"), number(latLng, "longitude"));
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.ev.bench;
+
+import com.example.ev.model.FindRequest;
+import com.example.ev.util.GeoUtils;
+import com.example.ev.util.Polyline;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Deterministic upstream fixtures for the benchmarks, in the exact wire formats of
+ * Google computeRoutes and the ChargePoint station_list API.
+ * Routes wiggle around the straight line between their end points with a vertex every
+ * ~300 m, like a highway polyline; stations are spread along the route at a fixed density.
+ */
+public final class Fixtures {
+
+    private static final double VERTEX_SPACING_KM = 0.3;
+    private static final double WIGGLE_KM = 0.8;
+
+    public enum Trip {
+        // ~30 km city hop, one stop on a low battery
+        SHORT(37.7749, -122.4194, 37.5000, -122.2500, 12.0, 40.0),
+        // ~400 km regional trip, one or two stops
+        REGIONAL(37.7749, -122.4194, 34.6000, -120.5000, 150.0, 60.0),
+        // ~5,000 km cross-country trip, about twenty stops
+        CROSS_COUNTRY(37.7749, -122.4194, 40.7128, -74.0060, 200.0, 80.0);
+
+        final double originLat, originLon, destinationLat, destinationLon;
+        final double currentRangeMiles, soc;
+
+        Trip(double originLat, double originLon, double destinationLat, double destinationLon,
+             double currentRangeMiles, double soc) {
+            this.originLat = originLat;
+            this.originLon = originLon;
+            this.destinationLat = destinationLat;
+            this.destinationLon = destinationLon;
+            this.currentRangeMiles = currentRangeMiles;
+            this.soc = soc;
+        }
+
+        public FindRequest request() {
+            FindRequest request = new FindRequest();
+            request.setOrigin(latLng(originLat, originLon));
+            request.setDestination(latLng(destinationLat, destinationLon));
+            request.setCurrentRangeMiles(currentRangeMiles);
+            request.setSoc(soc);
+            return request;
+        }
+    }
+
+    public static final class Station {
+        final int deviceId;
+        final double lat;
+        final double lon;
+
+        Station(int deviceId, double lat, double lon) {
+            this.deviceId = deviceId;
+            this.lat = lat;
+            this.lon = lon;
+        }
+    }
+
+    private Fixtures() {
+    }
+
+    public static FindRequest.LatLng latLng(double lat, double lon) {
+        FindRequest.LatLng point = new FindRequest.LatLng();
+        point.latitude = lat;
+        point.longitude = lon;
+        return point;
+    }
+
+    /**
+     * Route through the given points in order, as packed lat/lon pairs.
+     */
+    public static double[] routeCoords(List<FindRequest.LatLng> points) {
+        List<double[]> vertices = new ArrayList<>();
+        for (int k = 0; k + 1 < points.size(); k++) {
+            FindRequest.LatLng from = points.get(k);
+            FindRequest.LatLng to = points.get(k + 1);
+            double km = GeoUtils.haversineMiles(from.latitude, from.longitude, to.latitude, to.longitude) * GeoUtils.KM_PER_MILE;
+            int steps = Math.max(1, (int) Math.ceil(km / VERTEX_SPACING_KM));
+            // The wiggle is a function of the absolute position, so routes that share ground share vertices
+            for (int i = k == 0 ? 0 : 1; i <= steps; i++) {
+                double t = (double) i / steps;
+                double lat = from.latitude + (to.latitude - from.latitude) * t;
+                double lon = from.longitude + (to.longitude - from.longitude) * t;
+                double wiggle = i == 0 || i == steps ? 0.0 : WIGGLE_KM / 111.0 * Math.sin(lat * 40.0 + lon * 40.0);
+                vertices.add(new double[]{lat + wiggle, lon - wiggle});
+            }
+        }
+        double[] coords = new double[vertices.size() * 2];
+        for (int i = 0; i < vertices.size(); i++) {
+            coords[2 * i] = vertices.get(i)[0];
+            coords[2 * i + 1] = vertices.get(i)[1];
+        }
+        return coords;
+    }
+
+    public static String encodedPolyline(double[] coords) {
+        return Polyline.encode(coords, 0, coords.length / 2);
+    }
+
+    public static double lengthMeters(double[] coords) {
+        double miles = 0.0;
+        for (int i = 1; i < coords.length / 2; i++) {
+            miles += GeoUtils.haversineMiles(coords[2 * i - 2], coords[2 * i - 1], coords[2 * i], coords[2 * i + 1]);
+        }
+        return miles * 1609.344;
+    }
+
+    /**
+     * computeRoutes response body with a single route.
+     */
+    public static byte[] routesResponse(double[] coords) {
+        String json = String.format(Locale.ROOT,
+                "{\"routes\":[{\"distanceMeters\":%d,\"duration\":\"%ds\",\"polyline\":{\"encodedPolyline\":\"%s\"}}]}",
+                Math.round(lengthMeters(coords)), Math.round(lengthMeters(coords) / 29.0),
+                encodedPolyline(coords).replace("\\", "\\\\"));
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Stations spread along the route, one every spacingKm on average, up to offsetKm off it.
+     */
+    public static List<Station> stationsAlong(double[] coords, double spacingKm, double offsetKm, long seed) {
+        Random random = new Random(seed);
+        List<Station> stations = new ArrayList<>();
+        double sinceLastKm = 0.0;
+        for (int i = 1; i < coords.length / 2; i++) {
+            sinceLastKm += GeoUtils.haversineMiles(coords[2 * i - 2], coords[2 * i - 1], coords[2 * i], coords[2 * i + 1])
+                    * GeoUtils.KM_PER_MILE;
+            if (sinceLastKm >= spacingKm * (0.5 + random.nextDouble())) {
+                double dLat = (random.nextDouble() * 2 - 1) * offsetKm / 111.0;
+                double dLon = (random.nextDouble() * 2 - 1) * offsetKm / (111.0 * Math.cos(Math.toRadians(coords[2 * i])));
+                stations.add(new Station(100000 + stations.size(), coords[2 * i] + dLat, coords[2 * i + 1] + dLon));
+                sinceLastKm = 0.0;
+            }
+        }
+        return stations;
+    }
+
+    /**
+     * station_list response for a bounding box, closest to the reference point first.
+     */
+    public static byte[] stationListResponse(List<Station> stations, double neLat, double neLon, double swLat, double swLon,
+                                             double referenceLat, double referenceLon, int pageSize) {
+        List<Station> inBox = new ArrayList<>();
+        for (Station station : stations) {
+            if (station.lat <= neLat && station.lat >= swLat && station.lon <= neLon && station.lon >= swLon) {
+                inBox.add(station);
+            }
+        }
+        inBox.sort(Comparator.comparingDouble(station -> GeoUtils.haversineMiles(referenceLat, referenceLon, station.lat, station.lon)));
+
+        StringBuilder json = new StringBuilder(256 + 400 * Math.min(pageSize, inBox.size()));
+        json.append("{\"station_list\":{\"page_offset\":\"\",\"stations\":[");
+        for (int k = 0; k < inBox.size() && k < pageSize; k++) {
+            Station station = inBox.get(k);
+            if (k > 0) {
+                json.append(',');
+            }
+            json.append(String.format(Locale.ROOT,
+                    "{\"device_id\":%d,\"lat\":%.6f,\"lon\":%.6f,\"name1\":\"Fixture Plaza\",\"name2\":\"DC %d\","
+                            + "\"station_name\":[\"FIXTURE\",\"DC %d\"],\"address\":{\"address1\":\"%d Fixture Way\",\"city\":\"Benchville\"},"
+                            + "\"port_count\":{\"total\":4,\"available\":2},\"dc_fast_charging\":true,\"payment_type\":\"paid\","
+                            + "\"station_status_v2\":\"available\",\"max_power\":{\"unit\":\"kW\",\"max\":62.5}}",
+                    station.deviceId, station.lat, station.lon, station.deviceId, station.deviceId, station.deviceId));
+        }
+        json.append("]},\"map_data\":{}}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
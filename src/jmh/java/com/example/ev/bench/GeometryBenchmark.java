@@ -0,0 +1,91 @@
+package com.example.ev.bench;
+
+import com.example.ev.util.GeoKernel;
+import com.example.ev.util.GeoUtils;
+import com.example.ev.util.Polyline;
+import com.example.ev.util.RouteGeometry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polyline decoding and great-circle distance over the fixture routes, per point pair
+ * and through the batch kernel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeometryBenchmark {
+
+    @Param({"SHORT", "REGIONAL", "CROSS_COUNTRY"})
+    public Fixtures.Trip trip;
+
+    private String encoded;
+    private double[] coords;
+    private double[] cosLat;
+    private double[] segments;
+
+    @Setup
+    public void setUp() {
+        coords = Fixtures.routeCoords(List.of(trip.request().getOrigin(), trip.request().getDestination()));
+        encoded = Fixtures.encodedPolyline(coords);
+        cosLat = new double[coords.length / 2];
+        segments = new double[coords.length / 2];
+    }
+
+    @Benchmark
+    public List<double[]> polylineDecode() {
+        return Polyline.decode(encoded);
+    }
+
+    @Benchmark
+    public RouteGeometry routeGeometryDecode() {
+        return RouteGeometry.decode(encoded);
+    }
+
+    @Benchmark
+    public RouteGeometry routeGeometryDecodeEquirectangular() {
+        return RouteGeometry.decode(encoded, GeoKernel.Distance.EQUIRECTANGULAR);
+    }
+
+    @Benchmark
+    public double kernelHaversineAlongRoute() {
+        return kernelAlongRoute(GeoKernel.Distance.HAVERSINE);
+    }
+
+    @Benchmark
+    public double kernelEquirectangularAlongRoute() {
+        return kernelAlongRoute(GeoKernel.Distance.EQUIRECTANGULAR);
+    }
+
+    private double kernelAlongRoute(GeoKernel.Distance distance) {
+        int n = coords.length / 2;
+        GeoKernel.cosLatitudes(coords, n, cosLat);
+        GeoKernel.segmentMiles(coords, cosLat, n, distance, segments);
+        GeoKernel.accumulate(segments, n, segments);
+        return segments[n - 1];
+    }
+
+    @Benchmark
+    public double haversineMilesAlongRoute() {
+        double total = 0.0;
+        for (int i = 1; i < coords.length / 2; i++) {
+            total += GeoUtils.haversineMiles(coords[2 * i - 2], coords[2 * i - 1], coords[2 * i], coords[2 * i + 1]);
+        }
+        return total;
+    }
+}
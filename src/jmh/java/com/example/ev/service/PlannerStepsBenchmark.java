@@ -0,0 +1,80 @@
+package com.example.ev.service;
+
+import com.example.ev.bench.BenchmarkContext;
+import com.example.ev.bench.FixtureRestTemplate;
+import com.example.ev.bench.Fixtures;
+import com.example.ev.model.FindRequest;
+import com.example.ev.util.RouteGeometry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-leg planner steps in isolation. Lives in the service package to reach the
+ * package-private steps of {@link RouteService}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlannerStepsBenchmark {
+
+    @Param({"SHORT", "REGIONAL", "CROSS_COUNTRY"})
+    public Fixtures.Trip trip;
+
+    private ConfigurableApplicationContext context;
+    private RouteService routeService;
+    private RouteGeometry geometry;
+    private List<FindRequest.LatLng> intermediates;
+    private int lastReachableIndex;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(new FixtureRestTemplate(List.of()), Map.of());
+        routeService = context.getBean(RouteService.class);
+
+        FindRequest request = trip.request();
+        geometry = RouteGeometry.decode(Fixtures.encodedPolyline(
+                Fixtures.routeCoords(List.of(request.getOrigin(), request.getDestination()))));
+        lastReachableIndex = (int) (geometry.size() * 0.6);
+
+        // Two intermediates inside the reachable part, one beyond it
+        intermediates = new ArrayList<>();
+        for (double fraction : new double[]{0.25, 0.5, 0.75}) {
+            int vertex = (int) (geometry.size() * fraction);
+            intermediates.add(Fixtures.latLng(geometry.lat(vertex), geometry.lon(vertex)));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public double getSearchRadiusKm() {
+        return routeService.getSearchRadiusKm(geometry);
+    }
+
+    @Benchmark
+    public List<FindRequest.LatLng> checkAndUpdateReachedIntermediates() {
+        return routeService.checkAndUpdateReachedIntermediates(geometry, lastReachableIndex, new ArrayList<>(intermediates));
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.ev.loadtest;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Simulated upstream response time, parsed from a short spec:
+ * <ul>
+ *   <li>{@code fixed:80} - always 80 ms</li>
+ *   <li>{@code uniform:20-200} - uniform between 20 and 200 ms</li>
+ *   <li>{@code exponential:100} - exponential with a 100 ms mean</li>
+ *   <li>{@code lognormal:120,800} - log-normal with a 120 ms median and an 800 ms p99</li>
+ * </ul>
+ */
+public final class LatencyDistribution {
+
+    // z-score of the 99th percentile of the standard normal distribution
+    private static final double Z_99 = 2.326;
+
+    private final String spec;
+    private final String kind;
+    private final double a;
+    private final double b;
+
+    private LatencyDistribution(String spec, String kind, double a, double b) {
+        this.spec = spec;
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+    }
+
+    public static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().toLowerCase(Locale.ROOT).split(":", 2);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Latency spec must look like kind:params, got " + spec);
+        }
+        String kind = parts[0];
+        String[] params = parts[1].split("[,-]");
+        switch (kind) {
+            case "fixed", "exponential" -> {
+                return new LatencyDistribution(spec, kind, Double.parseDouble(params[0]), 0.0);
+            }
+            case "uniform" -> {
+                double min = Double.parseDouble(params[0]);
+                double max = Double.parseDouble(params[1]);
+                if (max < min) {
+                    throw new IllegalArgumentException("Uniform latency max is below min: " + spec);
+                }
+                return new LatencyDistribution(spec, kind, min, max);
+            }
+            case "lognormal" -> {
+                double median = Double.parseDouble(params[0]);
+                double p99 = Double.parseDouble(params[1]);
+                if (median <= 0 || p99 < median) {
+                    throw new IllegalArgumentException("Log-normal latency needs 0 < median <= p99: " + spec);
+                }
+                return new LatencyDistribution(spec, kind, Math.log(median), Math.log(p99 / median) / Z_99);
+            }
+            default -> throw new IllegalArgumentException("Unknown latency distribution " + kind
+                    + " (expected fixed, uniform, exponential or lognormal)");
+        }
+    }
+
+    public long sampleMillis() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double millis = switch (kind) {
+            case "fixed" -> a;
+            case "uniform" -> a + (b - a) * random.nextDouble();
+            case "exponential" -> -a * Math.log(1.0 - random.nextDouble());
+            default -> Math.exp(a + b * random.nextGaussian());
+        };
+        return Math.max(0L, Math.round(millis));
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.ev.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Open-loop load: requests are sent on a fixed schedule at the target rate whether or not
+ * earlier ones have finished, and each latency is measured from the request's scheduled
+ * send time, so a slow server cannot hide its queueing delay by slowing the generator down.
+ */
+public final class LoadGenerator {
+
+    private final HttpClient client;
+    private final URI endpoint;
+    private final Duration requestTimeout;
+    private final int maxInFlight;
+
+    public LoadGenerator(URI endpoint, Duration requestTimeout, int maxInFlight) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.endpoint = endpoint;
+        this.requestTimeout = requestTimeout;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public static final class Result {
+        private final long[] latencyNanos;
+        private final long sent;
+        private final long completed;
+        private final long failed;
+        private final long dropped;
+        private final long elapsedNanos;
+
+        Result(long[] latencyNanos, long sent, long completed, long failed, long dropped, long elapsedNanos) {
+            this.latencyNanos = latencyNanos;
+            this.sent = sent;
+            this.completed = completed;
+            this.failed = failed;
+            this.dropped = dropped;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Latency of successful requests at the given percentile (0-100), in milliseconds.
+         */
+        public double percentileMillis(double percentile) {
+            if (latencyNanos.length == 0) {
+                return 0.0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * latencyNanos.length) - 1;
+            return latencyNanos[Math.max(0, Math.min(latencyNanos.length - 1, index))] / 1_000_000.0;
+        }
+
+        public double throughputPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : completed * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        public double maxMillis() {
+            return latencyNanos.length == 0 ? 0.0 : latencyNanos[latencyNanos.length - 1] / 1_000_000.0;
+        }
+
+        public long getSent() {
+            return sent;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getDropped() {
+            return dropped;
+        }
+
+        public double getElapsedSeconds() {
+            return elapsedNanos / 1_000_000_000.0;
+        }
+    }
+
+    /**
+     * Send rps requests per second for the given duration and wait for all of them to finish.
+     * Requests that would exceed maxInFlight are dropped and reported instead of queued.
+     */
+    public Result run(double rps, Duration duration, Supplier<String> bodies) {
+        int total = (int) Math.max(1, Math.round(rps * duration.toNanos() / 1_000_000_000.0));
+        long intervalNanos = Math.round(1_000_000_000.0 / rps);
+        long[] latencies = new long[total];
+        Arrays.fill(latencies, -1L);
+        CompletableFuture<?>[] pending = new CompletableFuture<?>[total];
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicLong failed = new AtomicLong();
+        long dropped = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long scheduled = start + i * intervalNanos;
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (inFlight.get() >= maxInFlight) {
+                dropped++;
+                pending[i] = CompletableFuture.completedFuture(null);
+                continue;
+            }
+            inFlight.incrementAndGet();
+            HttpRequest request = HttpRequest.newBuilder(endpoint)
+                    .timeout(requestTimeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(bodies.get()))
+                    .build();
+            int slot = i;
+            pending[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        inFlight.decrementAndGet();
+                        if (error == null && response.statusCode() == 200) {
+                            latencies[slot] = System.nanoTime() - scheduled;
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                    });
+        }
+        try {
+            CompletableFuture.allOf(pending).get(requestTimeout.toMillis() + 5_000, TimeUnit.MILLISECONDS);
+        } catch (Exception ignored) {
+            // Failures are counted per request; a stuck request simply has no latency
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long[] successful = Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+        return new Result(successful, total - dropped, successful.length, failed.get(), dropped, elapsed);
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.ev.loadtest;
+
+import com.example.ev.EvChargerFinderApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.PrintStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * End-to-end load test on one machine, fully offline: starts the upstream simulator, boots
+ * the application against it on a random port, drives the plan endpoint at a fixed rate
+ * and prints latency percentiles, throughput and upstream calls per plan.
+ * <p>
+ * Options are {@code --key=value} arguments. {@code load.*} and {@code sim.*} configure the
+ * harness (see {@link #DEFAULTS}); anything else is passed to the application, e.g.
+ * {@code --ev.planner.mode=graph}.
+ */
+public final class LoadTest {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("load.rps", "5");
+        DEFAULTS.put("load.durationSeconds", "30");
+        DEFAULTS.put("load.warmupSeconds", "10");
+        DEFAULTS.put("load.endpoint", "/api/v1/find-charge-route");
+        DEFAULTS.put("load.timeoutSeconds", "60");
+        DEFAULTS.put("load.maxInFlight", "2000");
+        // Trips start inside south,west,north,east (continental US by default)
+        DEFAULTS.put("load.region", "30.0,-120.0,47.0,-77.0");
+        DEFAULTS.put("load.minTripKm", "50");
+        DEFAULTS.put("load.maxTripKm", "800");
+        DEFAULTS.put("load.minRangeMiles", "80");
+        DEFAULTS.put("load.maxRangeMiles", "250");
+        // Number of different trips to draw requests from; 0 makes every request a new trip
+        DEFAULTS.put("load.distinctTrips", "0");
+        DEFAULTS.put("load.seed", "42");
+        DEFAULTS.put("sim.port", "0");
+        DEFAULTS.put("sim.routes.latency", "lognormal:150,900");
+        DEFAULTS.put("sim.routes.errorRate", "0.0");
+        DEFAULTS.put("sim.stations.latency", "lognormal:80,400");
+        DEFAULTS.put("sim.stations.errorRate", "0.0");
+        DEFAULTS.put("sim.stationsPer1000Km2", "10.0");
+    }
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        List<String> appArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value, got " + arg);
+            }
+            String key = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (key.startsWith("load.") || key.startsWith("sim.")) {
+                if (!DEFAULTS.containsKey(key)) {
+                    throw new IllegalArgumentException("Unknown option " + key + "; known options: " + DEFAULTS.keySet());
+                }
+                options.put(key, value);
+            } else {
+                appArgs.add(arg);
+            }
+        }
+
+        SyntheticWorld world = new SyntheticWorld(Double.parseDouble(options.get("sim.stationsPer1000Km2")),
+                Long.parseLong(options.get("load.seed")));
+        UpstreamSimulator simulator = new UpstreamSimulator(world,
+                LatencyDistribution.parse(options.get("sim.routes.latency")),
+                Double.parseDouble(options.get("sim.routes.errorRate")),
+                LatencyDistribution.parse(options.get("sim.stations.latency")),
+                Double.parseDouble(options.get("sim.stations.errorRate")))
+                .start(Integer.parseInt(options.get("sim.port")));
+
+        List<String> arguments = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--google.routes.api.key=loadtest",
+                "--google.routes.api.url=" + simulator.routesUrl(),
+                "--chargepoint.map.api.url=" + simulator.stationsUrl(),
+                // The simulator speaks plain HTTP/1.1
+                "--http.google.http2=false",
+                "--spring.main.banner-mode=off",
+                // The planner logs every step; keep the report readable, but show startup failures
+                "--logging.level.root=WARN",
+                "--logging.level.com.example.ev=WARN",
+                "--logging.level.org.springframework.web.client=WARN"));
+        arguments.addAll(appArgs);
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(EvChargerFinderApplication.class)
+                .run(arguments.toArray(String[]::new));
+        try {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI endpoint = URI.create("http://127.0.0.1:" + port + options.get("load.endpoint"));
+            LoadGenerator generator = new LoadGenerator(endpoint,
+                    Duration.ofSeconds(Long.parseLong(options.get("load.timeoutSeconds"))),
+                    Integer.parseInt(options.get("load.maxInFlight")));
+            double rps = Double.parseDouble(options.get("load.rps"));
+            Supplier<String> trips = trips(options);
+
+            long warmup = Long.parseLong(options.get("load.warmupSeconds"));
+            if (warmup > 0) {
+                System.out.printf(Locale.ROOT, "Warming up for %d s at %.1f req/s...%n", warmup, rps);
+                generator.run(rps, Duration.ofSeconds(warmup), trips);
+            }
+            simulator.resetCounters();
+
+            long duration = Long.parseLong(options.get("load.durationSeconds"));
+            System.out.printf(Locale.ROOT, "Measuring for %d s at %.1f req/s against %s...%n", duration, rps, endpoint.getPath());
+            LoadGenerator.Result result = generator.run(rps, Duration.ofSeconds(duration), trips);
+            print(System.out, options, result, simulator);
+        } finally {
+            context.close();
+            simulator.stop();
+        }
+    }
+
+    private static void print(PrintStream out, Map<String, String> options, LoadGenerator.Result result, UpstreamSimulator simulator) {
+        double plans = Math.max(1, result.getSent());
+        out.println();
+        out.printf(Locale.ROOT, "Upstreams   routes %s (%.1f%% errors), stations %s (%.1f%% errors), %s stations/1000 km2%n",
+                options.get("sim.routes.latency"), 100 * Double.parseDouble(options.get("sim.routes.errorRate")),
+                options.get("sim.stations.latency"), 100 * Double.parseDouble(options.get("sim.stations.errorRate")),
+                options.get("sim.stationsPer1000Km2"));
+        out.printf(Locale.ROOT, "Requests    %d sent, %d ok, %d failed, %d dropped (over %d in flight)%n",
+                result.getSent(), result.getCompleted(), result.getFailed(), result.getDropped(),
+                Integer.parseInt(options.get("load.maxInFlight")));
+        out.printf(Locale.ROOT, "Throughput  %.1f plans/s over %.1f s (target %s req/s)%n",
+                result.throughputPerSecond(), result.getElapsedSeconds(), options.get("load.rps"));
+        out.printf(Locale.ROOT, "Latency ms  p50 %.1f  p95 %.1f  p99 %.1f  max %.1f%n",
+                result.percentileMillis(50), result.percentileMillis(95), result.percentileMillis(99), result.maxMillis());
+        out.printf(Locale.ROOT, "Upstream    %.2f route calls + %.2f station queries = %.2f calls per plan (%d + %d simulated errors)%n",
+                simulator.getRouteCalls() / plans, simulator.getStationCalls() / plans,
+                (simulator.getRouteCalls() + simulator.getStationCalls()) / plans,
+                simulator.getRouteErrors(), simulator.getStationErrors());
+    }
+
+    /**
+     * Request bodies for random trips inside the region, optionally drawn from a fixed pool.
+     */
+    private static Supplier<String> trips(Map<String, String> options) {
+        String[] region = options.get("load.region").split(",");
+        double south = Double.parseDouble(region[0].trim());
+        double west = Double.parseDouble(region[1].trim());
+        double north = Double.parseDouble(region[2].trim());
+        double east = Double.parseDouble(region[3].trim());
+        double minKm = Double.parseDouble(options.get("load.minTripKm"));
+        double maxKm = Double.parseDouble(options.get("load.maxTripKm"));
+        double minRange = Double.parseDouble(options.get("load.minRangeMiles"));
+        double maxRange = Double.parseDouble(options.get("load.maxRangeMiles"));
+        Random random = new Random(Long.parseLong(options.get("load.seed")));
+
+        Supplier<String> fresh = () -> {
+            double originLat = south + (north - south) * random.nextDouble();
+            double originLon = west + (east - west) * random.nextDouble();
+            double km = minKm + (maxKm - minKm) * random.nextDouble();
+            double bearing = 2 * Math.PI * random.nextDouble();
+            double destinationLat = originLat + km * Math.cos(bearing) / 111.32;
+            double destinationLon = originLon + km * Math.sin(bearing) / (111.32 * Math.cos(Math.toRadians(originLat)));
+            double range = minRange + (maxRange - minRange) * random.nextDouble();
+            return String.format(Locale.ROOT,
+                    "{\"origin\":{\"latitude\":%.6f,\"longitude\":%.6f},\"destination\":{\"latitude\":%.6f,\"longitude\":%.6f},"
+                            + "\"currentRangeMiles\":%.1f,\"soc\":%.1f}",
+                    originLat, originLon, destinationLat, destinationLon, range, Math.min(100.0, range / maxRange * 100.0));
+        };
+
+        int distinct = Integer.parseInt(options.get("load.distinctTrips"));
+        if (distinct <= 0) {
+            return fresh;
+        }
+        String[] pool = new String[distinct];
+        for (int i = 0; i < distinct; i++) {
+            pool[i] = fresh.get();
+        }
+        return () -> pool[random.nextInt(distinct)];
+    }
+}
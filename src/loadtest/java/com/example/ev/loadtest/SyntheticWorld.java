@@ -0,0 +1,163 @@
+package com.example.ev.loadtest;
+
+import com.example.ev.util.GeoUtils;
+import com.example.ev.util.Polyline;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deterministic roads and charging stations for the upstream simulator.
+ * Roads follow the straight line (in degrees) between waypoints with a vertex every
+ * ~300 m and a gentle wiggle, like a highway polyline. Stations are scattered per
+ * 0.1 x 0.1 degree cell with a Poisson count around stationsPer1000Km2, seeded by the
+ * cell, so every query for the same area sees the same stations.
+ */
+public final class SyntheticWorld {
+
+    private static final double CELL_DEGREES = 0.1;
+    private static final double KM_PER_DEGREE = 111.32;
+    private static final double VERTEX_SPACING_KM = 0.3;
+    private static final double WIGGLE_KM = 0.8;
+    private static final double METERS_PER_MILE = 1609.344;
+    // Average highway speed used for the route duration, in m/s
+    private static final double SPEED_MPS = 29.0;
+
+    private final double stationsPer1000Km2;
+    private final long seed;
+    private final Map<Long, double[]> cells = new ConcurrentHashMap<>();
+
+    public SyntheticWorld(double stationsPer1000Km2, long seed) {
+        this.stationsPer1000Km2 = stationsPer1000Km2;
+        this.seed = seed;
+    }
+
+    /**
+     * computeRoutes response body with one route through the given lat/lon waypoints.
+     */
+    public byte[] routesResponse(List<double[]> waypoints) {
+        double[] coords = road(waypoints);
+        double meters = 0.0;
+        for (int i = 1; i < coords.length / 2; i++) {
+            meters += GeoUtils.haversineMiles(coords[2 * i - 2], coords[2 * i - 1], coords[2 * i], coords[2 * i + 1]) * METERS_PER_MILE;
+        }
+        String json = String.format(Locale.ROOT,
+                "{\"routes\":[{\"distanceMeters\":%d,\"duration\":\"%ds\",\"polyline\":{\"encodedPolyline\":\"%s\"}}]}",
+                Math.round(meters), Math.round(meters / SPEED_MPS),
+                Polyline.encode(coords, 0, coords.length / 2).replace("\\", "\\\\"));
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * station_list response for a bounding box, closest to the reference point first, at most pageSize stations.
+     */
+    public byte[] stationListResponse(double neLat, double neLon, double swLat, double swLon,
+                                      double referenceLat, double referenceLon, int pageSize) {
+        List<double[]> inBox = new ArrayList<>();
+        for (long row = cell(swLat); row <= cell(neLat); row++) {
+            for (long col = cell(swLon); col <= cell(neLon); col++) {
+                double[] stations = stationsIn(row, col);
+                for (int k = 0; k < stations.length; k += 3) {
+                    double lat = stations[k];
+                    double lon = stations[k + 1];
+                    if (lat <= neLat && lat >= swLat && lon <= neLon && lon >= swLon) {
+                        inBox.add(new double[]{lat, lon, stations[k + 2],
+                                GeoUtils.haversineMiles(referenceLat, referenceLon, lat, lon)});
+                    }
+                }
+            }
+        }
+        inBox.sort((x, y) -> Double.compare(x[3], y[3]));
+
+        int count = Math.min(pageSize, inBox.size());
+        StringBuilder json = new StringBuilder(128 + 420 * count);
+        json.append("{\"station_list\":{\"page_offset\":\"\",\"stations\":[");
+        for (int k = 0; k < count; k++) {
+            double[] station = inBox.get(k);
+            long deviceId = (long) station[2];
+            if (k > 0) {
+                json.append(',');
+            }
+            json.append(String.format(Locale.ROOT,
+                    "{\"device_id\":%d,\"lat\":%.6f,\"lon\":%.6f,\"name1\":\"Sim Plaza\",\"name2\":\"DC %d\","
+                            + "\"station_name\":[\"SIM\",\"DC %d\"],\"address\":{\"address1\":\"%d Simulator Way\",\"city\":\"Loadville\"},"
+                            + "\"port_count\":{\"total\":4,\"available\":2},\"dc_fast_charging\":true,\"payment_type\":\"paid\","
+                            + "\"station_status_v2\":\"available\",\"max_power\":{\"unit\":\"kW\",\"max\":62.5}}",
+                    deviceId, station[0], station[1], deviceId, deviceId, deviceId));
+        }
+        json.append("]},\"map_data\":{}}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static double[] road(List<double[]> waypoints) {
+        List<double[]> vertices = new ArrayList<>();
+        for (int k = 0; k + 1 < waypoints.size(); k++) {
+            double[] from = waypoints.get(k);
+            double[] to = waypoints.get(k + 1);
+            double km = GeoUtils.haversineMiles(from[0], from[1], to[0], to[1]) * GeoUtils.KM_PER_MILE;
+            int steps = Math.max(1, (int) Math.ceil(km / VERTEX_SPACING_KM));
+            for (int i = k == 0 ? 0 : 1; i <= steps; i++) {
+                double t = (double) i / steps;
+                double lat = from[0] + (to[0] - from[0]) * t;
+                double lon = from[1] + (to[1] - from[1]) * t;
+                // The wiggle depends only on the position, so routes over the same ground share vertices
+                double wiggle = i == 0 || i == steps ? 0.0 : WIGGLE_KM / KM_PER_DEGREE * Math.sin(lat * 40.0 + lon * 40.0);
+                vertices.add(new double[]{lat + wiggle, lon - wiggle});
+            }
+        }
+        double[] coords = new double[vertices.size() * 2];
+        for (int i = 0; i < vertices.size(); i++) {
+            coords[2 * i] = vertices.get(i)[0];
+            coords[2 * i + 1] = vertices.get(i)[1];
+        }
+        return coords;
+    }
+
+    private static long cell(double degrees) {
+        return (long) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    /**
+     * Stations of one cell as packed lat, lon, deviceId triples.
+     */
+    private double[] stationsIn(long row, long col) {
+        long key = row * 1_000_003L + col;
+        return cells.computeIfAbsent(key, k -> {
+            Random random = new Random(seed ^ (k * 0x9E3779B97F4A7C15L));
+            double south = row * CELL_DEGREES;
+            double west = col * CELL_DEGREES;
+            double heightKm = CELL_DEGREES * KM_PER_DEGREE;
+            double widthKm = heightKm * Math.cos(Math.toRadians(south + CELL_DEGREES / 2));
+            int count = poisson(random, stationsPer1000Km2 * heightKm * widthKm / 1000.0);
+            double[] stations = new double[count * 3];
+            for (int i = 0; i < count; i++) {
+                stations[3 * i] = south + random.nextDouble() * CELL_DEGREES;
+                stations[3 * i + 1] = west + random.nextDouble() * CELL_DEGREES;
+                stations[3 * i + 2] = ((k * 64 + i) & 0x3fffffffL) + 1;
+            }
+            return stations;
+        });
+    }
+
+    private static int poisson(Random random, double mean) {
+        if (mean <= 0.0) {
+            return 0;
+        }
+        if (mean > 50.0) {
+            return Math.max(0, (int) Math.round(mean + Math.sqrt(mean) * random.nextGaussian()));
+        }
+        double limit = Math.exp(-mean);
+        double product = random.nextDouble();
+        int count = 0;
+        while (product > limit) {
+            product *= random.nextDouble();
+            count++;
+        }
+        return count;
+    }
+}
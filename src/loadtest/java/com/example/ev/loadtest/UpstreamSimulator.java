@@ -0,0 +1,164 @@
+package com.example.ev.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for Google computeRoutes and the ChargePoint map API, on one non-blocking
+ * HTTP server. Each call waits a sampled latency and then either fails with a 503 (at the
+ * configured error rate) or answers from the {@link SyntheticWorld}.
+ */
+public final class UpstreamSimulator {
+
+    public static final String ROUTES_PATH = "/directions/v2:computeRoutes";
+    public static final String STATIONS_PATH = "/map-sim/v2";
+
+    private static final byte[] ERROR_BODY = "{\"error\":{\"code\":503,\"message\":\"Simulated upstream failure\"}}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final SyntheticWorld world;
+    private final LatencyDistribution routeLatency;
+    private final double routeErrorRate;
+    private final LatencyDistribution stationLatency;
+    private final double stationErrorRate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final AtomicLong routeCalls = new AtomicLong();
+    private final AtomicLong routeErrors = new AtomicLong();
+    private final AtomicLong stationCalls = new AtomicLong();
+    private final AtomicLong stationErrors = new AtomicLong();
+
+    private DisposableServer server;
+
+    public UpstreamSimulator(SyntheticWorld world,
+                             LatencyDistribution routeLatency, double routeErrorRate,
+                             LatencyDistribution stationLatency, double stationErrorRate) {
+        this.world = world;
+        this.routeLatency = routeLatency;
+        this.routeErrorRate = routeErrorRate;
+        this.stationLatency = stationLatency;
+        this.stationErrorRate = stationErrorRate;
+    }
+
+    public UpstreamSimulator start(int port) {
+        server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(port)
+                .handle(this::handle)
+                .bindNow();
+        return this;
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.disposeNow();
+        }
+    }
+
+    public String routesUrl() {
+        return "http://127.0.0.1:" + server.port() + ROUTES_PATH;
+    }
+
+    public String stationsUrl() {
+        return "http://127.0.0.1:" + server.port() + STATIONS_PATH;
+    }
+
+    private Mono<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+        boolean routes = request.uri().startsWith(ROUTES_PATH);
+        if (!routes && !request.uri().startsWith(STATIONS_PATH)) {
+            return response.status(HttpResponseStatus.NOT_FOUND).send();
+        }
+        (routes ? routeCalls : stationCalls).incrementAndGet();
+        long delayMillis = (routes ? routeLatency : stationLatency).sampleMillis();
+        boolean fail = ThreadLocalRandom.current().nextDouble() < (routes ? routeErrorRate : stationErrorRate);
+
+        return request.receive().aggregate().asByteArray()
+                .defaultIfEmpty(new byte[0])
+                .delayElement(Duration.ofMillis(delayMillis))
+                .flatMap(body -> {
+                    if (fail) {
+                        (routes ? routeErrors : stationErrors).incrementAndGet();
+                        return reply(response, HttpResponseStatus.SERVICE_UNAVAILABLE, ERROR_BODY);
+                    }
+                    try {
+                        return reply(response, HttpResponseStatus.OK, routes ? routesBody(body) : stationsBody(body));
+                    } catch (Exception ex) {
+                        byte[] error = ("{\"error\":{\"code\":400,\"message\":\"" + ex.getMessage() + "\"}}")
+                                .getBytes(StandardCharsets.UTF_8);
+                        return reply(response, HttpResponseStatus.BAD_REQUEST, error);
+                    }
+                });
+    }
+
+    private static Mono<Void> reply(HttpServerResponse response, HttpResponseStatus status, byte[] body) {
+        return response.status(status)
+                .header("Content-Type", "application/json")
+                .header("Content-Length", String.valueOf(body.length))
+                .sendByteArray(Mono.just(body))
+                .then();
+    }
+
+    private byte[] routesBody(byte[] body) throws Exception {
+        JsonNode request = objectMapper.readTree(body);
+        List<double[]> waypoints = new ArrayList<>();
+        waypoints.add(latLng(request.path("origin")));
+        for (JsonNode intermediate : request.path("intermediates")) {
+            waypoints.add(latLng(intermediate));
+        }
+        waypoints.add(latLng(request.path("destination")));
+        return world.routesResponse(waypoints);
+    }
+
+    private byte[] stationsBody(byte[] body) throws Exception {
+        JsonNode query = objectMapper.readTree(body).path("station_list");
+        return world.stationListResponse(
+                query.path("ne_lat").asDouble(), query.path("ne_lon").asDouble(),
+                query.path("sw_lat").asDouble(), query.path("sw_lon").asDouble(),
+                query.path("reference_lat").asDouble(), query.path("reference_lon").asDouble(),
+                query.path("page_size").asInt(50));
+    }
+
+    private static double[] latLng(JsonNode waypoint) {
+        JsonNode latLng = waypoint.path("location").path("latLng");
+        if (!latLng.has("latitude") || !latLng.has("longitude")) {
+            throw new IllegalArgumentException("Waypoint without location.latLng");
+        }
+        return new double[]{latLng.path("latitude").asDouble(), latLng.path("longitude").asDouble()};
+    }
+
+    public long getRouteCalls() {
+        return routeCalls.get();
+    }
+
+    public long getRouteErrors() {
+        return routeErrors.get();
+    }
+
+    public long getStationCalls() {
+        return stationCalls.get();
+    }
+
+    public long getStationErrors() {
+        return stationErrors.get();
+    }
+
+    public void resetCounters() {
+        routeCalls.set(0);
+        routeErrors.set(0);
+        stationCalls.set(0);
+        stationErrors.set(0);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.ev.config;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Closes the body stream when the response is closed. The Reactor Netty response of
+ * Spring 6.1.5 only disposes the connection on close, so the aggregated body buffer behind
+ * the stream was never released and every blocking call leaked it. Disposing also closed
+ * a connection the pool could already have handed to the next request, which then failed
+ * with a premature close; the connection is only dropped when the body was not read.
+ */
+class BodyClosingResponse implements ClientHttpResponse {
+
+    private final ClientHttpResponse delegate;
+    private InputStream body;
+
+    BodyClosingResponse(ClientHttpResponse delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public HttpStatusCode getStatusCode() throws IOException {
+        return delegate.getStatusCode();
+    }
+
+    @Override
+    public String getStatusText() throws IOException {
+        return delegate.getStatusText();
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return delegate.getHeaders();
+    }
+
+    @Override
+    public InputStream getBody() throws IOException {
+        if (body == null) {
+            body = delegate.getBody();
+        }
+        return body;
+    }
+
+    @Override
+    public void close() {
+        try {
+            getBody().close(); // Releases the buffer; the connection went back to the pool with the last byte
+        } catch (IOException | RuntimeException ex) {
+            // The body never arrived in full; drop the connection rather than reuse it
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.ev.config;
+
+import com.example.ev.model.FindResponse;
+import com.example.ev.service.ChargePointStation;
+import com.example.ev.util.SingleFlight;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-flight coalescing for concurrent identical work: whole plans, Google route calls
+ * and ChargePoint station queries. Each level has its own waiting timeout, sized above the
+ * upstream timeouts of the work it waits on.
+ */
+@Configuration
+public class CoalescingConfig {
+
+    @Bean
+    public SingleFlight<FindResponse> planSingleFlight(@Value("${ev.singleFlight.enabled:true}") boolean enabled,
+                                                       @Value("${ev.singleFlight.planTimeoutMs:60000}") long timeoutMs) {
+        return new SingleFlight<>("plan", enabled, timeoutMs);
+    }
+
+    @Bean
+    public SingleFlight<Map<String, Object>> routeSingleFlight(@Value("${ev.singleFlight.enabled:true}") boolean enabled,
+                                                               @Value("${ev.singleFlight.routeTimeoutMs:15000}") long timeoutMs) {
+        return new SingleFlight<>(HttpConfig.GOOGLE_POOL, enabled, timeoutMs);
+    }
+
+    @Bean
+    public SingleFlight<List<ChargePointStation>> stationSingleFlight(@Value("${ev.singleFlight.enabled:true}") boolean enabled,
+                                                                      @Value("${ev.singleFlight.stationTimeoutMs:10000}") long timeoutMs) {
+        return new SingleFlight<>(HttpConfig.CHARGEPOINT_POOL, enabled, timeoutMs);
+    }
+}
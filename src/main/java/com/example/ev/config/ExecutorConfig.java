@@ -0,0 +1,57 @@
+package com.example.ev.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Pool used to fan out fallback ChargePoint searches, shared by all planning requests.
+     * Its size bounds how many of these searches run at once in total; each plan keeps at
+     * most ev.fallbackSearch.parallelism of its own in flight, so one plan cannot fill it.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService stationSearchExecutor(@Value("${ev.fallbackSearch.poolSize:50}") int poolSize) {
+        return Executors.newFixedThreadPool(Math.max(1, poolSize), namedDaemonThreads("station-search-"));
+    }
+
+    /**
+     * Threads for blocking upstream calls that are hedged: the first attempt and its duplicate
+     * each run here while the caller waits for whichever answers first. Concurrency is bounded
+     * by the upstream bulkheads, not by this pool.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService upstreamCallExecutor() {
+        return Executors.newCachedThreadPool(namedDaemonThreads("upstream-call-"));
+    }
+
+    /**
+     * Single writer thread for the persistent cache, so request threads (including event-loop
+     * threads) never serialize entries, compact the file or wait for it. Writes beyond
+     * queueSize are rejected and the caller drops them.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService persistentCacheWriter(@Value("${ev.persistentCache.writeQueue:1000}") int queueSize) {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(Math.max(1, queueSize)),
+                namedDaemonThreads("persistent-cache-writer-"));
+    }
+
+    static ThreadFactory namedDaemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
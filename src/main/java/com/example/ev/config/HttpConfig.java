@@ -1,14 +1,186 @@
 package com.example.ev.config;
 
+import com.example.ev.service.ChargePointStation;
+import com.example.ev.util.Bulkhead;
+import com.example.ev.util.CircuitBreaker;
+import com.example.ev.util.UpstreamGuard;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ReactorNettyClientRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * HTTP clients for the two upstreams. Google Routes and ChargePoint each get their own
+ * Reactor Netty connection pool, shared by that upstream's RestTemplate and WebClient,
+ * with keep-alive, optional HTTP/2, explicit timeouts and a separate bulkhead, and its calls
+ * go through an {@link UpstreamGuard} (hedging, circuit breaker, stale fallback).
+ */
 @Configuration
 public class HttpConfig {
 
+    public static final String GOOGLE_POOL = "google-routes";
+    public static final String CHARGEPOINT_POOL = "chargepoint";
+
+    // Long cross-country routes return large polylines, so the in-memory buffer is raised above the 256 KB default
+    private static final int MAX_IN_MEMORY_BYTES = 16 * 1024 * 1024;
+
+    @Bean
+    public HttpClient googleHttpClient(UpstreamPoolMetrics poolMetrics,
+                                       @Value("${http.google.maxConnections:50}") int maxConnections,
+                                       @Value("${http.google.connectTimeoutMs:2000}") int connectTimeoutMs,
+                                       @Value("${http.google.readTimeoutMs:10000}") long readTimeoutMs,
+                                       @Value("${http.google.http2:true}") boolean http2,
+                                       @Value("${http.maxIdleTimeMs:30000}") long maxIdleTimeMs) {
+        return httpClient(GOOGLE_POOL, poolMetrics, maxConnections, connectTimeoutMs, readTimeoutMs, http2, maxIdleTimeMs);
+    }
+
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public HttpClient chargepointHttpClient(UpstreamPoolMetrics poolMetrics,
+                                            @Value("${http.chargepoint.maxConnections:50}") int maxConnections,
+                                            @Value("${http.chargepoint.connectTimeoutMs:2000}") int connectTimeoutMs,
+                                            @Value("${http.chargepoint.readTimeoutMs:5000}") long readTimeoutMs,
+                                            @Value("${http.chargepoint.http2:false}") boolean http2,
+                                            @Value("${http.maxIdleTimeMs:30000}") long maxIdleTimeMs) {
+        return httpClient(CHARGEPOINT_POOL, poolMetrics, maxConnections, connectTimeoutMs, readTimeoutMs, http2, maxIdleTimeMs);
+    }
+
+    @Bean
+    public RestTemplate googleRestTemplate(HttpClient googleHttpClient,
+                                           @Value("${http.google.connectTimeoutMs:2000}") int connectTimeoutMs,
+                                           @Value("${http.google.readTimeoutMs:10000}") long readTimeoutMs) {
+        return restTemplate(googleHttpClient, connectTimeoutMs, readTimeoutMs);
+    }
+
+    @Bean
+    public RestTemplate chargepointRestTemplate(HttpClient chargepointHttpClient,
+                                                @Value("${http.chargepoint.connectTimeoutMs:2000}") int connectTimeoutMs,
+                                                @Value("${http.chargepoint.readTimeoutMs:5000}") long readTimeoutMs) {
+        return restTemplate(chargepointHttpClient, connectTimeoutMs, readTimeoutMs);
+    }
+
+    @Bean
+    public WebClient googleWebClient(WebClient.Builder builder, HttpClient googleHttpClient) {
+        return webClient(builder, googleHttpClient);
+    }
+
+    @Bean
+    public WebClient chargepointWebClient(WebClient.Builder builder, HttpClient chargepointHttpClient) {
+        return webClient(builder, chargepointHttpClient);
+    }
+
+    @Bean
+    public Bulkhead googleBulkhead(@Value("${http.google.maxConcurrentCalls:50}") int maxConcurrentCalls,
+                                   @Value("${http.google.maxWaitMs:500}") long maxWaitMs) {
+        return new Bulkhead(GOOGLE_POOL, maxConcurrentCalls, maxWaitMs);
+    }
+
+    @Bean
+    public Bulkhead chargepointBulkhead(@Value("${http.chargepoint.maxConcurrentCalls:50}") int maxConcurrentCalls,
+                                        @Value("${http.chargepoint.maxWaitMs:500}") long maxWaitMs) {
+        return new Bulkhead(CHARGEPOINT_POOL, maxConcurrentCalls, maxWaitMs);
+    }
+
+    /**
+     * Hedging, circuit breaker and last-known routes for Google Routes. A stale route is a
+     * copy of the last one fetched for the same key, with "stale" set.
+     */
+    @Bean
+    public UpstreamGuard<Map<String, Object>> googleGuard(@Qualifier("upstreamCallExecutor") ExecutorService executor,
+                                                          @Value("${http.google.hedge.enabled:true}") boolean hedgeEnabled,
+                                                          @Value("${http.google.hedge.quantile:0.95}") double hedgeQuantile,
+                                                          @Value("${http.google.hedge.minDelayMs:50}") long hedgeMinDelayMs,
+                                                          @Value("${http.google.breaker.windowSize:50}") int windowSize,
+                                                          @Value("${http.google.breaker.minimumCalls:10}") int minimumCalls,
+                                                          @Value("${http.google.breaker.failureRate:0.5}") double failureRate,
+                                                          @Value("${http.google.breaker.openMs:30000}") long openMs,
+                                                          @Value("${http.google.stale.maxEntries:1000}") int staleMaxEntries,
+                                                          @Value("${http.google.stale.maxSeconds:3600}") long staleMaxSeconds) {
+        return new UpstreamGuard<>(new CircuitBreaker(GOOGLE_POOL, windowSize, minimumCalls, failureRate, openMs),
+                executor, hedgeEnabled, hedgeQuantile, hedgeMinDelayMs, staleMaxEntries, staleMaxSeconds * 1000L,
+                route -> {
+                    Map<String, Object> stale = new HashMap<>(route);
+                    stale.put("stale", true);
+                    return stale;
+                });
+    }
+
+    /**
+     * Hedging, circuit breaker and last-known station lists for ChargePoint; stale lists hold
+     * stale copies of the stations.
+     */
+    @Bean
+    public UpstreamGuard<List<ChargePointStation>> chargepointGuard(@Qualifier("upstreamCallExecutor") ExecutorService executor,
+                                                                    @Value("${http.chargepoint.hedge.enabled:true}") boolean hedgeEnabled,
+                                                                    @Value("${http.chargepoint.hedge.quantile:0.95}") double hedgeQuantile,
+                                                                    @Value("${http.chargepoint.hedge.minDelayMs:50}") long hedgeMinDelayMs,
+                                                                    @Value("${http.chargepoint.breaker.windowSize:50}") int windowSize,
+                                                                    @Value("${http.chargepoint.breaker.minimumCalls:10}") int minimumCalls,
+                                                                    @Value("${http.chargepoint.breaker.failureRate:0.5}") double failureRate,
+                                                                    @Value("${http.chargepoint.breaker.openMs:30000}") long openMs,
+                                                                    @Value("${http.chargepoint.stale.maxEntries:5000}") int staleMaxEntries,
+                                                                    @Value("${http.chargepoint.stale.maxSeconds:900}") long staleMaxSeconds) {
+        return new UpstreamGuard<>(new CircuitBreaker(CHARGEPOINT_POOL, windowSize, minimumCalls, failureRate, openMs),
+                executor, hedgeEnabled, hedgeQuantile, hedgeMinDelayMs, staleMaxEntries, staleMaxSeconds * 1000L,
+                stations -> {
+                    List<ChargePointStation> stale = new ArrayList<>(stations.size());
+                    for (ChargePointStation station : stations) {
+                        stale.add(station.asStale());
+                    }
+                    return stale;
+                });
+    }
+
+    private HttpClient httpClient(String poolName, UpstreamPoolMetrics poolMetrics, int maxConnections,
+                                  int connectTimeoutMs, long readTimeoutMs, boolean http2, long maxIdleTimeMs) {
+        ConnectionProvider provider = ConnectionProvider.builder(poolName)
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(maxConnections * 2)
+                .pendingAcquireTimeout(Duration.ofMillis(connectTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeMs))
+                .metrics(true, () -> poolMetrics)
+                .build();
+
+        HttpClient client = HttpClient.create(provider)
+                .keepAlive(true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(readTimeoutMs))
+                .compress(true);
+        if (http2) {
+            // Negotiated via ALPN on https; falls back to HTTP/1.1 where the upstream does not offer h2
+            client = client.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure();
+        }
+        return client;
+    }
+
+    private RestTemplate restTemplate(HttpClient httpClient, int connectTimeoutMs, long readTimeoutMs) {
+        ReactorNettyClientRequestFactory requestFactory = new ReactorNettyClientRequestFactory(httpClient);
+        requestFactory.setConnectTimeout(connectTimeoutMs);
+        requestFactory.setReadTimeout(readTimeoutMs);
+        requestFactory.setExchangeTimeout(connectTimeoutMs + readTimeoutMs);
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add((request, body, execution) -> new BodyClosingResponse(execution.execute(request, body)));
+        return restTemplate;
+    }
+
+    private WebClient webClient(WebClient.Builder builder, HttpClient httpClient) {
+        return builder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(MAX_IN_MEMORY_BYTES))
+                .build();
     }
 }
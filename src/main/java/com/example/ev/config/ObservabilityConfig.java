@@ -0,0 +1,56 @@
+package com.example.ev.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+@Configuration
+public class ObservabilityConfig {
+
+    /**
+     * Registry for the planning stage observations. {@link PlanMetrics} turns them into timers;
+     * a tracing bridge registered as another handler would turn the same observations into spans.
+     */
+    @Bean
+    public ObservationRegistry observationRegistry(PlanMetrics planMetrics) {
+        ObservationRegistry registry = ObservationRegistry.create();
+        registry.observationConfig().observationHandler(planMetrics);
+        return registry;
+    }
+
+    /**
+     * Jackson converter for MVC responses (including the reactive endpoints) that times
+     * writing each body, tagged with the response type.
+     */
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper,
+                                                                                   ObservationRegistry observationRegistry) {
+        return new TimedJacksonConverter(objectMapper, observationRegistry);
+    }
+
+    static class TimedJacksonConverter extends MappingJackson2HttpMessageConverter {
+
+        private final ObservationRegistry observationRegistry;
+
+        TimedJacksonConverter(ObjectMapper objectMapper, ObservationRegistry observationRegistry) {
+            super(objectMapper);
+            this.observationRegistry = observationRegistry;
+        }
+
+        @Override
+        protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+            Object value = object instanceof MappingJacksonValue projected ? projected.getValue() : object;
+            Observation.createNotStarted(PlanMetrics.SERIALIZATION, observationRegistry)
+                    .lowCardinalityKeyValue("type", value.getClass().getSimpleName())
+                    .observeChecked(() -> super.writeInternal(object, type, outputMessage));
+        }
+    }
+}
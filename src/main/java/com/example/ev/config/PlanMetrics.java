@@ -0,0 +1,194 @@
+package com.example.ev.config;
+
+import com.example.ev.util.Histogram;
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationView;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Turns the planning observations into timers, and rolls the upstream calls and stage
+ * times of each plan up into per-plan summaries. Every observation gets a timer named
+ * after it, tagged with its low-cardinality key values and the error type, if any.
+ */
+@Slf4j
+@Component
+public class PlanMetrics implements ObservationHandler<Observation.Context> {
+
+    /** Whole plan, from request to response object. */
+    public static final String PLAN = "ev.plan";
+    /** Route for the trip as requested. */
+    public static final String ROUTE_FETCH = "ev.plan.route.fetch";
+    /** Decoding a returned polyline into route geometry. */
+    public static final String DECODE = "ev.plan.decode";
+    /** Simplifying a decoded route for traversal and for the response. */
+    public static final String SIMPLIFY = "ev.plan.simplify";
+    /** Walking a leg's geometry against the range. */
+    public static final String TRAVERSAL = "ev.plan.traversal";
+    /** Finding the charging station for one leg. */
+    public static final String STATION_SEARCH = "ev.plan.station.search";
+    /** Route on from a charging stop, spliced or fetched. */
+    public static final String REROUTE = "ev.plan.reroute";
+    /** Writing a response body. */
+    public static final String SERIALIZATION = "ev.plan.serialization";
+    /** One call to an upstream, tagged upstream=google|chargepoint. */
+    public static final String UPSTREAM = "ev.upstream";
+
+    private static final String START_NANOS = PlanMetrics.class.getName() + ".start";
+
+    private static final double[] SECONDS_BUCKETS = {
+            0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+    private static final double[] COUNT_BUCKETS = {0, 1, 2, 3, 5, 10, 20, 50, 100, 200};
+
+    private final ConcurrentMap<String, Meter> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Meter> summaries = new ConcurrentHashMap<>();
+
+    public static final class Meter {
+        final String name;
+        final Map<String, String> tags;
+        final Histogram histogram;
+
+        Meter(String name, Map<String, String> tags, double[] bounds) {
+            this.name = name;
+            this.tags = tags;
+            this.histogram = new Histogram(bounds);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Map<String, String> getTags() {
+            return tags;
+        }
+
+        public Histogram getHistogram() {
+            return histogram;
+        }
+    }
+
+    /**
+     * Upstream calls and stage time of one plan, attached to its observation.
+     */
+    private static final class PlanTally {
+        final Map<String, AtomicLong> upstreamCalls = new ConcurrentHashMap<>();
+        final Map<String, AtomicLong> stageNanos = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return true;
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+        context.put(START_NANOS, System.nanoTime());
+        if (PLAN.equals(context.getName())) {
+            context.put(PlanTally.class, new PlanTally());
+        }
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        Long start = context.get(START_NANOS);
+        if (start == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        Map<String, String> tags = tags(context);
+        timer(context.getName(), tags).record(nanos / 1e9);
+
+        if (PLAN.equals(context.getName())) {
+            finishPlan(context, tags, nanos);
+            return;
+        }
+        PlanTally tally = planTally(context);
+        if (tally != null) {
+            tally.stageNanos.computeIfAbsent(context.getName(), name -> new AtomicLong()).addAndGet(nanos);
+            if (UPSTREAM.equals(context.getName())) {
+                tally.upstreamCalls.computeIfAbsent(tags.getOrDefault("upstream", "unknown"), name -> new AtomicLong())
+                        .incrementAndGet();
+            }
+        }
+    }
+
+    private void finishPlan(Observation.Context context, Map<String, String> tags, long nanos) {
+        PlanTally tally = context.get(PlanTally.class);
+        for (String upstream : new String[]{"google", "chargepoint"}) {
+            AtomicLong calls = tally.upstreamCalls.get(upstream);
+            summary("ev.plan.upstream.calls", Map.of("upstream", upstream)).record(calls == null ? 0 : calls.get());
+        }
+        if (log.isDebugEnabled()) {
+            StringBuilder stages = new StringBuilder();
+            new TreeMap<>(tally.stageNanos).forEach((stage, stageNanos) ->
+                    stages.append(' ').append(stage).append('=').append(stageNanos.get() / 1_000_000).append("ms"));
+            log.debug("Plan {} took {} ms, upstream calls {}, stages:{}",
+                    tags, nanos / 1_000_000, tally.upstreamCalls, stages);
+        }
+    }
+
+    /**
+     * Record one leg's station search: how many points were searched in order, whether one
+     * had a station, and how far back along the fallback candidates the search had to go.
+     */
+    public void recordStationSearch(int attempts, boolean found) {
+        summary("ev.plan.station.search.attempts", Map.of("found", String.valueOf(found))).record(attempts);
+        summary("ev.plan.fallback.depth", Map.of()).record(Math.max(0, attempts - 1));
+    }
+
+    /**
+     * Record one speculative next-leg prefetch: how far the estimated search point was from the
+     * real one, and whether the real search box was inside the prefetched one.
+     */
+    public void recordPrefetch(boolean confirmed, double errorMiles) {
+        summary("ev.plan.prefetch.errorMiles", Map.of("confirmed", String.valueOf(confirmed))).record(errorMiles);
+    }
+
+    public List<Meter> getTimers() {
+        return new ArrayList<>(timers.values());
+    }
+
+    public List<Meter> getSummaries() {
+        return new ArrayList<>(summaries.values());
+    }
+
+    private Histogram timer(String name, Map<String, String> tags) {
+        return timers.computeIfAbsent(name + tags, key -> new Meter(name, tags, SECONDS_BUCKETS)).histogram;
+    }
+
+    private Histogram summary(String name, Map<String, String> tags) {
+        return summaries.computeIfAbsent(name + tags, key -> new Meter(name, tags, COUNT_BUCKETS)).histogram;
+    }
+
+    private static Map<String, String> tags(Observation.Context context) {
+        Map<String, String> tags = new TreeMap<>();
+        for (KeyValue keyValue : context.getLowCardinalityKeyValues()) {
+            tags.put(keyValue.getKey(), keyValue.getValue());
+        }
+        Throwable error = context.getError();
+        tags.put("error", error == null ? "none" : error.getClass().getSimpleName());
+        return tags;
+    }
+
+    private static PlanTally planTally(Observation.ContextView context) {
+        ObservationView parent = context.getParentObservation();
+        while (parent != null) {
+            Observation.ContextView view = parent.getContextView();
+            if (PLAN.equals(view.getName())) {
+                return view.get(PlanTally.class);
+            }
+            parent = view.getParentObservation();
+        }
+        return null;
+    }
+}
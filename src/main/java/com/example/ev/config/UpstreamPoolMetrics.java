@@ -0,0 +1,54 @@
+package com.example.ev.config;
+
+import org.springframework.stereotype.Component;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.SocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects the live connection pool gauges Reactor Netty registers for each upstream pool
+ * (one pool per remote address) so they can be reported per upstream.
+ */
+@Component
+public class UpstreamPoolMetrics implements ConnectionProvider.MeterRegistrar {
+
+    private final Map<String, Map<String, ConnectionPoolMetrics>> pools = new ConcurrentHashMap<>();
+
+    @Override
+    public void registerMetrics(String poolName, String id, SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+        pools.computeIfAbsent(poolName, name -> new ConcurrentHashMap<>()).put(String.valueOf(remoteAddress), metrics);
+    }
+
+    @Override
+    public void deRegisterMetrics(String poolName, String id, SocketAddress remoteAddress) {
+        Map<String, ConnectionPoolMetrics> remotes = pools.get(poolName);
+        if (remotes != null) {
+            remotes.remove(String.valueOf(remoteAddress));
+        }
+    }
+
+    /**
+     * Current gauges for one pool, summed over its remote addresses.
+     */
+    public Map<String, Integer> snapshot(String poolName) {
+        int acquired = 0, allocated = 0, idle = 0, pending = 0, maxAllocated = 0;
+        for (ConnectionPoolMetrics metrics : pools.getOrDefault(poolName, Map.of()).values()) {
+            acquired += metrics.acquiredSize();
+            allocated += metrics.allocatedSize();
+            idle += metrics.idleSize();
+            pending += metrics.pendingAcquireSize();
+            maxAllocated += metrics.maxAllocatedSize();
+        }
+        Map<String, Integer> snapshot = new LinkedHashMap<>();
+        snapshot.put("acquired", acquired);
+        snapshot.put("allocated", allocated);
+        snapshot.put("idle", idle);
+        snapshot.put("pendingAcquire", pending);
+        snapshot.put("maxAllocated", maxAllocated);
+        return snapshot;
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.ev.controller;
+
+import com.example.ev.config.HttpConfig;
+import com.example.ev.config.PlanMetrics;
+import com.example.ev.config.UpstreamPoolMetrics;
+import com.example.ev.model.FindResponse;
+import com.example.ev.service.ChargePointStation;
+import com.example.ev.service.PersistentCache;
+import com.example.ev.service.RouteCache;
+import com.example.ev.service.StationTileCache;
+import com.example.ev.util.Bulkhead;
+import com.example.ev.util.Histogram;
+import com.example.ev.util.SingleFlight;
+import com.example.ev.util.UpstreamGuard;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Planning stage timers, per-plan summaries and upstream gauges, as JSON and in the
+ * Prometheus text format. Timers are in seconds in the Prometheus output and in
+ * milliseconds in the JSON output; percentiles are estimated from the histogram buckets.
+ */
+@RestController
+@RequestMapping("/api/v1")
+@RequiredArgsConstructor
+public class MetricsController {
+
+    private final PlanMetrics planMetrics;
+    private final UpstreamPoolMetrics poolMetrics;
+    private final RouteCache routeCache;
+    private final StationTileCache stationTileCache;
+    private final PersistentCache persistentCache;
+    @Qualifier("googleBulkhead")
+    private final Bulkhead googleBulkhead;
+    @Qualifier("chargepointBulkhead")
+    private final Bulkhead chargepointBulkhead;
+    @Qualifier("planSingleFlight")
+    private final SingleFlight<FindResponse> planSingleFlight;
+    @Qualifier("routeSingleFlight")
+    private final SingleFlight<Map<String, Object>> routeSingleFlight;
+    @Qualifier("stationSingleFlight")
+    private final SingleFlight<List<ChargePointStation>> stationSingleFlight;
+    @Qualifier("googleGuard")
+    private final UpstreamGuard<Map<String, Object>> googleGuard;
+    @Qualifier("chargepointGuard")
+    private final UpstreamGuard<List<ChargePointStation>> chargepointGuard;
+
+    private static final class Gauge {
+        final String name;
+        final Map<String, String> tags;
+        final double value;
+
+        Gauge(String name, Map<String, String> tags, double value) {
+            this.name = name;
+            this.tags = tags;
+            this.value = value;
+        }
+    }
+
+    @GetMapping("/metrics")
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("timers", meters(planMetrics.getTimers(), 1000.0));
+        metrics.put("summaries", meters(planMetrics.getSummaries(), 1.0));
+        List<Map<String, Object>> gauges = new ArrayList<>();
+        for (Gauge gauge : gauges()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", gauge.name);
+            entry.put("tags", gauge.tags);
+            entry.put("value", gauge.value);
+            gauges.add(entry);
+        }
+        metrics.put("gauges", gauges);
+        return metrics;
+    }
+
+    @GetMapping(value = "/metrics/prometheus", produces = "text/plain; version=0.0.4; charset=utf-8")
+    public String prometheus() {
+        StringBuilder out = new StringBuilder(16 * 1024);
+        writeHistograms(out, planMetrics.getTimers(), "_seconds");
+        writeHistograms(out, planMetrics.getSummaries(), "");
+        String lastName = null;
+        for (Gauge gauge : gauges()) {
+            String name = prometheusName(gauge.name);
+            if (!name.equals(lastName)) {
+                out.append("# TYPE ").append(name).append(" gauge\n");
+                lastName = name;
+            }
+            sample(out, name, gauge.tags, null, gauge.value);
+        }
+        return out.toString();
+    }
+
+    private static List<Map<String, Object>> meters(List<PlanMetrics.Meter> meters, double scale) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        meters.sort(Comparator.comparing((PlanMetrics.Meter meter) -> meter.getName()).thenComparing(meter -> meter.getTags().toString()));
+        for (PlanMetrics.Meter meter : meters) {
+            Histogram histogram = meter.getHistogram();
+            long count = histogram.getCount();
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", meter.getName());
+            entry.put("tags", meter.getTags());
+            entry.put("count", count);
+            entry.put("mean", count == 0 ? 0.0 : histogram.getSum() / count * scale);
+            entry.put("p50", histogram.percentile(0.50) * scale);
+            entry.put("p95", histogram.percentile(0.95) * scale);
+            entry.put("p99", histogram.percentile(0.99) * scale);
+            entry.put("max", histogram.getMax() * scale);
+            result.add(entry);
+        }
+        return result;
+    }
+
+    private static void writeHistograms(StringBuilder out, List<PlanMetrics.Meter> meters, String unit) {
+        meters.sort(Comparator.comparing((PlanMetrics.Meter meter) -> meter.getName()).thenComparing(meter -> meter.getTags().toString()));
+        String lastName = null;
+        for (PlanMetrics.Meter meter : meters) {
+            String name = prometheusName(meter.getName()) + unit;
+            if (!name.equals(lastName)) {
+                out.append("# TYPE ").append(name).append(" histogram\n");
+                lastName = name;
+            }
+            Histogram histogram = meter.getHistogram();
+            double[] bounds = histogram.getBounds();
+            long[] cumulative = histogram.cumulativeCounts();
+            for (int i = 0; i < bounds.length; i++) {
+                sample(out, name + "_bucket", meter.getTags(), number(bounds[i]), cumulative[i]);
+            }
+            sample(out, name + "_bucket", meter.getTags(), "+Inf", histogram.getCount());
+            sample(out, name + "_count", meter.getTags(), null, histogram.getCount());
+            sample(out, name + "_sum", meter.getTags(), null, histogram.getSum());
+        }
+        for (PlanMetrics.Meter meter : meters) {
+            String name = prometheusName(meter.getName()) + unit + "_max";
+            if (!name.equals(lastName)) {
+                out.append("# TYPE ").append(name).append(" gauge\n");
+                lastName = name;
+            }
+            sample(out, name, meter.getTags(), null, meter.getHistogram().getMax());
+        }
+    }
+
+    private List<Gauge> gauges() {
+        List<Gauge> gauges = new ArrayList<>();
+        for (String pool : new String[]{HttpConfig.GOOGLE_POOL, HttpConfig.CHARGEPOINT_POOL}) {
+            poolMetrics.snapshot(pool).forEach((metric, value) ->
+                    gauges.add(new Gauge("ev.upstream.pool." + metric, Map.of("pool", pool), value)));
+        }
+        bulkhead(gauges, HttpConfig.GOOGLE_POOL, googleBulkhead);
+        bulkhead(gauges, HttpConfig.CHARGEPOINT_POOL, chargepointBulkhead);
+        guard(gauges, HttpConfig.GOOGLE_POOL, googleGuard);
+        guard(gauges, HttpConfig.CHARGEPOINT_POOL, chargepointGuard);
+        singleFlight(gauges, "plan", planSingleFlight);
+        singleFlight(gauges, "route", routeSingleFlight);
+        singleFlight(gauges, "station", stationSingleFlight);
+        cache(gauges, "route", routeCache.getHits(), routeCache.getMisses(), routeCache.size());
+        cache(gauges, "stationTile", stationTileCache.getHits(), stationTileCache.getMisses(), stationTileCache.size());
+        if (persistentCache.isEnabled()) {
+            cache(gauges, "persistent", persistentCache.getHits(), persistentCache.getMisses(), persistentCache.size());
+            gauges.add(new Gauge("ev.cache.usedBytes", Map.of("cache", "persistent"), persistentCache.usedBytes()));
+            gauges.add(new Gauge("ev.cache.droppedWrites", Map.of("cache", "persistent"), persistentCache.getDroppedWrites()));
+        }
+        gauges.sort(Comparator.comparing(gauge -> gauge.name));
+        return gauges;
+    }
+
+    private static void bulkhead(List<Gauge> gauges, String pool, Bulkhead bulkhead) {
+        Map<String, String> tags = Map.of("pool", pool);
+        gauges.add(new Gauge("ev.upstream.bulkhead.inFlight", tags, bulkhead.getInFlight()));
+        gauges.add(new Gauge("ev.upstream.bulkhead.maxConcurrentCalls", tags, bulkhead.getMaxConcurrentCalls()));
+        gauges.add(new Gauge("ev.upstream.bulkhead.rejected", tags, bulkhead.getRejected()));
+    }
+
+    // Breaker state: 0 closed, 1 open, 2 half-open; hedgeDelayMs is -1 until enough calls were timed
+    private static void guard(List<Gauge> gauges, String pool, UpstreamGuard<?> guard) {
+        Map<String, String> tags = Map.of("pool", pool);
+        gauges.add(new Gauge("ev.upstream.breaker.state", tags, guard.getBreaker().getState().ordinal()));
+        gauges.add(new Gauge("ev.upstream.breaker.opened", tags, guard.getBreaker().getOpened()));
+        gauges.add(new Gauge("ev.upstream.breaker.rejected", tags, guard.getBreaker().getRejected()));
+        gauges.add(new Gauge("ev.upstream.hedge.delayMs", tags, guard.getHedgeDelayMillis()));
+        gauges.add(new Gauge("ev.upstream.hedge.sent", tags, guard.getHedges()));
+        gauges.add(new Gauge("ev.upstream.hedge.won", tags, guard.getHedgeWins()));
+        gauges.add(new Gauge("ev.upstream.staleServed", tags, guard.getStaleServed()));
+    }
+
+    private static void singleFlight(List<Gauge> gauges, String level, SingleFlight<?> singleFlight) {
+        Map<String, String> tags = Map.of("level", level);
+        gauges.add(new Gauge("ev.singleFlight.inFlight", tags, singleFlight.getInFlight()));
+        gauges.add(new Gauge("ev.singleFlight.leaders", tags, singleFlight.getLeaders()));
+        gauges.add(new Gauge("ev.singleFlight.joined", tags, singleFlight.getJoined()));
+        gauges.add(new Gauge("ev.singleFlight.timeouts", tags, singleFlight.getTimeouts()));
+    }
+
+    private static void cache(List<Gauge> gauges, String cache, long hits, long misses, int size) {
+        Map<String, String> tags = Map.of("cache", cache);
+        gauges.add(new Gauge("ev.cache.hits", tags, hits));
+        gauges.add(new Gauge("ev.cache.misses", tags, misses));
+        gauges.add(new Gauge("ev.cache.hitRatio", tags, hits + misses == 0 ? 0.0 : (double) hits / (hits + misses)));
+        gauges.add(new Gauge("ev.cache.size", tags, size));
+    }
+
+    private static void sample(StringBuilder out, String name, Map<String, String> tags, String le, double value) {
+        out.append(name);
+        if (!tags.isEmpty() || le != null) {
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                if (!first) {
+                    out.append(',');
+                }
+                out.append(prometheusName(tag.getKey())).append("=\"").append(escape(tag.getValue())).append('"');
+                first = false;
+            }
+            if (le != null) {
+                out.append(first ? "" : ",").append("le=\"").append(le).append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ').append(number(value)).append('\n');
+    }
+
+    /**
+     * ev.plan.station.search -> ev_plan_station_search, ev.cache.hitRatio -> ev_cache_hit_ratio.
+     */
+    private static String prometheusName(String name) {
+        return name.replaceAll("([a-z])([A-Z])", "$1_$2").replace('.', '_').toLowerCase(Locale.ROOT);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String number(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value);
+    }
+}
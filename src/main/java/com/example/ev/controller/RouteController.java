@@ -1,25 +1,150 @@
 package com.example.ev.controller;
 
 import com.example.ev.model.FindRequest;
+import com.example.ev.model.FindResponse;
+import com.example.ev.model.PlanEvent;
+import com.example.ev.model.ReplanRequest;
+import com.example.ev.model.ResponseView;
+import com.example.ev.service.BatchRouteService;
 import com.example.ev.service.RouteService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.util.List;
+
+@Slf4j
 @RestController
 @RequestMapping("/api/v1")
 @RequiredArgsConstructor
 public class RouteController {
 
     private final RouteService routeService;
+    private final BatchRouteService batchRouteService;
 
+    /**
+     * Every plan endpoint takes {@code ?view=summary|stops|full} (see {@link ResponseView});
+     * without it the full response is returned.
+     */
     @PostMapping("/find-charge-route")
-    public ResponseEntity<?> findChargeRoute(@RequestBody FindRequest request) {
+    public ResponseEntity<?> findChargeRoute(@RequestBody FindRequest request,
+                                             @RequestParam(required = false) String view) {
+        Class<?> projection = ResponseView.named(view);
         try {
-            return ResponseEntity.ok(routeService.findChargingPlan(request));
+            return ResponseEntity.ok(project(routeService.findChargingPlan(request), projection));
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Charging plan failed", e);
             return ResponseEntity.status(500).body("Error: " + e.getMessage());
         }
     }
+
+    /**
+     * What-if re-plan of an earlier trip with another starting range, SOC or buffer, using the
+     * planId from its response. Answers 404 once the plan has expired; plan the trip again then.
+     */
+    @PostMapping("/find-charge-route/{planId}/replan")
+    public ResponseEntity<?> replanChargeRoute(@PathVariable String planId, @RequestBody ReplanRequest request,
+                                               @RequestParam(required = false) String view) {
+        Class<?> projection = ResponseView.named(view);
+        try {
+            FindResponse response = routeService.replan(planId, request);
+            if (response == null) {
+                return ResponseEntity.status(404).body("Error: unknown or expired plan " + planId);
+            }
+            return ResponseEntity.ok(project(response, projection));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("Charging re-plan failed", e);
+            return ResponseEntity.status(500).body("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Non-blocking variant of find-charge-route: the plan is built on WebClient and the
+     * servlet thread is released while upstream calls are in flight.
+     */
+    @PostMapping("/find-charge-route/reactive")
+    public Mono<ResponseEntity<?>> findChargeRouteReactive(@RequestBody FindRequest request,
+                                                           @RequestParam(required = false) String view) {
+        Class<?> projection = ResponseView.named(view);
+        return routeService.findChargingPlanReactive(request)
+                .<ResponseEntity<?>>map(response -> ResponseEntity.ok(project(response, projection)))
+                .onErrorResume(e -> {
+                    log.error("Charging plan failed", e);
+                    return Mono.just(ResponseEntity.status(500).body("Error: " + e.getMessage()));
+                });
+    }
+
+    /**
+     * Streamed variant of find-charge-route as newline-delimited JSON: a "route" event, then
+     * "stop" and "routePoint" events as the planner finds them, then a "summary" event.
+     * A failure part way through ends the stream with an "error" event.
+     */
+    @PostMapping(value = "/find-charge-route/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Object> streamChargeRoute(@RequestBody FindRequest request,
+                                          @RequestParam(required = false) String view) {
+        Class<?> projection = ResponseView.named(view);
+        return events(request).map(event -> project(event, projection));
+    }
+
+    /**
+     * The same stream as server-sent events, named after the event type.
+     */
+    @PostMapping(value = "/find-charge-route/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamChargeRouteEvents(@RequestBody FindRequest request,
+                                                                 @RequestParam(required = false) String view) {
+        Class<?> projection = ResponseView.named(view);
+        return events(request)
+                .map(event -> ServerSentEvent.builder(project(event.getData(), projection)).event(event.getType()).build());
+    }
+
+    private Flux<PlanEvent> events(FindRequest request) {
+        return routeService.streamChargingPlan(request)
+                .onErrorResume(e -> {
+                    log.error("Streamed charging plan failed", e);
+                    return Mono.just(new PlanEvent(PlanEvent.ERROR, "Error: " + e.getMessage()));
+                });
+    }
+
+    /**
+     * Plan a list of trips at once. Each item gets its own result or error; identical
+     * route and station lookups across the batch are made only once.
+     */
+    @PostMapping("/find-charge-route/batch")
+    public Mono<ResponseEntity<?>> findChargeRouteBatch(@RequestBody List<FindRequest> requests,
+                                                        @RequestParam(required = false) String view) {
+        Class<?> projection = ResponseView.named(view);
+        return batchRouteService.findChargingPlans(requests)
+                .<ResponseEntity<?>>map(response -> ResponseEntity.ok(project(response, projection)))
+                .onErrorResume(IllegalArgumentException.class,
+                        e -> Mono.just(ResponseEntity.badRequest().body("Error: " + e.getMessage())))
+                .onErrorResume(e -> {
+                    log.error("Batch charging plan failed", e);
+                    return Mono.just(ResponseEntity.status(500).body("Error: " + e.getMessage()));
+                });
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+    }
+
+    /**
+     * The body as written for the requested view; the body itself for the full response.
+     */
+    private static Object project(Object body, Class<?> view) {
+        if (view == null) {
+            return body;
+        }
+        MappingJacksonValue projected = new MappingJacksonValue(body);
+        projected.setSerializationView(view);
+        return projected;
+    }
 }
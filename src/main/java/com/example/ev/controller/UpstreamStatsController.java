@@ -0,0 +1,69 @@
+package com.example.ev.controller;
+
+import com.example.ev.config.HttpConfig;
+import com.example.ev.config.UpstreamPoolMetrics;
+import com.example.ev.model.FindResponse;
+import com.example.ev.service.ChargePointStation;
+import com.example.ev.util.Bulkhead;
+import com.example.ev.util.SingleFlight;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Connection pool, bulkhead and single-flight gauges for each upstream.
+ */
+@RestController
+@RequestMapping("/api/v1")
+@RequiredArgsConstructor
+public class UpstreamStatsController {
+
+    private final UpstreamPoolMetrics poolMetrics;
+    @Qualifier("googleBulkhead")
+    private final Bulkhead googleBulkhead;
+    @Qualifier("chargepointBulkhead")
+    private final Bulkhead chargepointBulkhead;
+    @Qualifier("planSingleFlight")
+    private final SingleFlight<FindResponse> planSingleFlight;
+    @Qualifier("routeSingleFlight")
+    private final SingleFlight<Map<String, Object>> routeSingleFlight;
+    @Qualifier("stationSingleFlight")
+    private final SingleFlight<List<ChargePointStation>> stationSingleFlight;
+
+    @GetMapping("/upstream-stats")
+    public Map<String, Object> upstreamStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put(HttpConfig.GOOGLE_POOL, upstream(HttpConfig.GOOGLE_POOL, googleBulkhead, routeSingleFlight));
+        stats.put(HttpConfig.CHARGEPOINT_POOL, upstream(HttpConfig.CHARGEPOINT_POOL, chargepointBulkhead, stationSingleFlight));
+        stats.put("plans", Map.of("singleFlight", singleFlight(planSingleFlight)));
+        return stats;
+    }
+
+    private Map<String, Object> singleFlight(SingleFlight<?> singleFlight) {
+        Map<String, Object> singleFlightStats = new LinkedHashMap<>();
+        singleFlightStats.put("inFlight", singleFlight.getInFlight());
+        singleFlightStats.put("leaders", singleFlight.getLeaders());
+        singleFlightStats.put("joined", singleFlight.getJoined());
+        singleFlightStats.put("timeouts", singleFlight.getTimeouts());
+        return singleFlightStats;
+    }
+
+    private Map<String, Object> upstream(String poolName, Bulkhead bulkhead, SingleFlight<?> singleFlight) {
+        Map<String, Object> bulkheadStats = new LinkedHashMap<>();
+        bulkheadStats.put("inFlight", bulkhead.getInFlight());
+        bulkheadStats.put("maxConcurrentCalls", bulkhead.getMaxConcurrentCalls());
+        bulkheadStats.put("rejected", bulkhead.getRejected());
+
+        Map<String, Object> upstream = new LinkedHashMap<>();
+        upstream.put("pool", poolMetrics.snapshot(poolName));
+        upstream.put("bulkhead", bulkheadStats);
+        upstream.put("singleFlight", singleFlight(singleFlight));
+        return upstream;
+    }
+}
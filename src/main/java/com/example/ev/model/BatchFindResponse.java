@@ -0,0 +1,24 @@
+package com.example.ev.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class BatchFindResponse {
+    private List<Item> results; // One entry per request, in request order
+    private long totalTimeMs;
+    private int routeCalls; // Unique Google Routes lookups made for the whole batch
+    private int stationCalls; // Unique ChargePoint lookups made for the whole batch
+    private int sharedLookups; // Lookups answered by another plan's call instead of a new one
+
+    @Data
+    @AllArgsConstructor
+    public static class Item {
+        private int index;
+        private FindResponse response; // Null when planning failed
+        private String error;
+    }
+}
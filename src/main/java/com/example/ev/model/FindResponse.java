@@ -1,5 +1,6 @@
 package com.example.ev.model;
 
+import com.fasterxml.jackson.annotation.JsonView;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
@@ -13,9 +14,13 @@ public class FindResponse {
     private double totalRouteDistanceMiles;
     private double remainingRangeAfterRoute;
     private Double finalSOCAtDestination; // SOC percentage when vehicle reaches destination
+    @JsonView(ResponseView.Stops.class)
     private List<Stop> stops = new ArrayList<>();
+    @JsonView(ResponseView.Stops.class)
     private String encodedPolyline; // Add encoded polyline to response
     private List<RoutePoint> routeSequence = new ArrayList<>(); // Sequential route points for frontend mapping
+    private String planId; // Handle for what-if re-plans with another range or SOC (POST /find-charge-route/{planId}/replan)
+    private boolean stale; // Some route or station data is the last known answer, served while an upstream was unavailable
 
     // Constructor for backward compatibility
     public FindResponse(boolean reachableWithoutCharging, double totalRouteDistanceMiles,
@@ -36,10 +41,13 @@ public class FindResponse {
         private String stationName;
         private double distanceFromRoutePointMiles;
         private Integer deviceId; // Add device_id from ChargePoint API
+        @JsonView(ResponseView.Full.class)
         private Object rawStationData; // Store the complete raw station data from API
+        @JsonView(ResponseView.Full.class)
         private List<Object> allRawStations = new ArrayList<>(); // All raw stations found at this search location
         private Double batteryPercentageOnArrival; // Battery % when reaching this charging station
         private Double batteryPercentageAfterCharging; // Battery % after charging (90%)
+        private boolean stale; // Station data is the last known answer; availability may have changed
     }
 
     @Data
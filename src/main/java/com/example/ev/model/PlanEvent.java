@@ -0,0 +1,46 @@
+package com.example.ev.model;
+
+import com.fasterxml.jackson.annotation.JsonView;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * One event of a streamed charging plan. A stream starts with a "route" event, carries
+ * "stop" and "routePoint" events in the order the planner finds them, and ends with a
+ * "summary" event, or an "error" event if planning fails part way.
+ */
+@Data
+@AllArgsConstructor
+public class PlanEvent {
+    public static final String ROUTE = "route";
+    public static final String STOP = "stop";
+    public static final String ROUTE_POINT = "routePoint";
+    public static final String SUMMARY = "summary";
+    public static final String ERROR = "error";
+
+    private String type;
+    private Object data;
+
+    @Data
+    @AllArgsConstructor
+    public static class Route {
+        private double totalRouteDistanceMiles;
+        @JsonView(ResponseView.Stops.class)
+        private String encodedPolyline;
+        private boolean chargingNeeded;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Summary {
+        private boolean reachableWithoutCharging;
+        private double totalRouteDistanceMiles;
+        private double remainingRangeAfterRoute;
+        private Double finalSOCAtDestination;
+        private int stopCount;
+        @JsonView(ResponseView.Stops.class)
+        private String encodedPolyline; // Changes from the route event's polyline only when the graph planner confirmed the stops
+        private String planId;
+        private boolean stale;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.ev.model;
+
+import lombok.Data;
+
+/**
+ * New starting values for a what-if re-plan of an earlier trip (see FindResponse.planId).
+ * Values left out keep the original request's value, or the configured buffer.
+ */
+@Data
+public class ReplanRequest {
+    /** current available range in miles (based on current SOC) */
+    private Double currentRangeMiles;
+    /** state of charge 0-100 (percentage) */
+    private Double soc;
+    /** share of the range kept as a safety margin, 0-1 (ev.bufferPercent when left out) */
+    private Double bufferPercent;
+}
@@ -0,0 +1,46 @@
+package com.example.ev.model;
+
+import java.util.Locale;
+
+/**
+ * Field projections a client can ask for with {@code ?view=}. Each view includes the ones
+ * before it; fields without a view are part of every view.
+ */
+public final class ResponseView {
+
+    /** Plan outcome and route sequence: no stop details and no polyline. */
+    public interface Summary {
+    }
+
+    /** Adds the stops and the encoded polyline, without the raw ChargePoint station objects. */
+    public interface Stops extends Summary {
+    }
+
+    /** Everything, including the raw station data; the same as no view. */
+    public interface Full extends Stops {
+    }
+
+    private ResponseView() {
+    }
+
+    /**
+     * View class for a view name, or null for the full response.
+     *
+     * @throws IllegalArgumentException for an unknown name
+     */
+    public static Class<?> named(String name) {
+        if (name == null || name.isBlank()) {
+            return null;
+        }
+        switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "summary":
+                return Summary.class;
+            case "stops":
+                return Stops.class;
+            case "full":
+                return null;
+            default:
+                throw new IllegalArgumentException("Unknown view '" + name + "', expected summary, stops or full");
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.ev.service;
+
+import com.example.ev.model.BatchFindResponse;
+import com.example.ev.model.FindRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Plans many trips in one call. Plans run concurrently on the non-blocking pipeline, up to
+ * ev.batch.parallelism at a time, and share one {@link UpstreamMemo}, so trips along the same
+ * corridor reuse each other's route and station lookups.
+ */
+@Service
+@RequiredArgsConstructor
+public class BatchRouteService {
+
+    private final RouteService routeService;
+
+    @Value("${ev.batch.parallelism:16}")
+    private int parallelism;
+
+    @Value("${ev.batch.maxRequests:500}")
+    private int maxRequests;
+
+    public Mono<BatchFindResponse> findChargingPlans(List<FindRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            return Mono.error(new IllegalArgumentException("Batch contains no requests"));
+        }
+        if (requests.size() > maxRequests) {
+            return Mono.error(new IllegalArgumentException("Batch of " + requests.size()
+                    + " requests exceeds the limit of " + maxRequests));
+        }
+
+        UpstreamMemo memo = new UpstreamMemo();
+        long startNanos = System.nanoTime();
+        return Flux.range(0, requests.size())
+                .flatMapSequential(index -> routeService.findChargingPlanReactive(requests.get(index))
+                        .map(plan -> new BatchFindResponse.Item(index, plan, null))
+                        .onErrorResume(e -> Mono.just(new BatchFindResponse.Item(index, null, "Error: " + e.getMessage()))),
+                        Math.max(1, parallelism))
+                .collectList()
+                .map(items -> new BatchFindResponse(items, (System.nanoTime() - startNanos) / 1_000_000,
+                        memo.getUniqueCalls(UpstreamMemo.ROUTES), memo.getUniqueCalls(UpstreamMemo.STATIONS),
+                        memo.getSharedLookups()))
+                .contextWrite(context -> context.put(UpstreamMemo.class, memo));
+    }
+}
@@ -0,0 +1,394 @@
+package com.example.ev.service;
+
+import com.example.ev.config.PlanMetrics;
+import com.example.ev.model.FindResponse;
+import com.example.ev.util.GeoUtils;
+import com.example.ev.util.Bulkhead;
+import com.example.ev.util.Observations;
+import com.example.ev.util.SingleFlight;
+import com.example.ev.util.UpstreamGuard;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.common.KeyValues;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ChargePoint map API access, blocking (RestTemplate) and non-blocking (WebClient).
+ * Both share the bounding-box payload, response parsing and the station tile cache.
+ * When an offline station index is loaded, stations come from it and the API only confirms availability.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChargePointClient {
+
+    private static final KeyValues UPSTREAM_TAGS = KeyValues.of("upstream", "chargepoint");
+
+    private static final int STATION_PAGE_SIZE = 10;
+    // ~200 m around a known station, enough to ask the map API whether it is available
+    private static final double AVAILABILITY_BOX_DEGREES = 0.002;
+
+    @Qualifier("chargepointRestTemplate")
+    private final RestTemplate restTemplate;
+    @Qualifier("chargepointWebClient")
+    private final WebClient webClient;
+    @Qualifier("chargepointBulkhead")
+    private final Bulkhead bulkhead;
+    @Qualifier("stationSingleFlight")
+    private final SingleFlight<List<ChargePointStation>> singleFlight;
+    @Qualifier("chargepointGuard")
+    private final UpstreamGuard<List<ChargePointStation>> guard;
+    private final StationTileCache stationTileCache;
+    private final OfflineStationIndex offlineStationIndex;
+    private final ObjectMapper objectMapper;
+    private final ObservationRegistry observationRegistry;
+
+    @Value("${chargepoint.map.api.url}")
+    private String chargepointApiUrl;
+
+    // With the offline index, the map API is only asked whether the top candidates are available right now
+    @Value("${stations.offline.verifyAvailability:true}")
+    private boolean verifyAvailability;
+
+    @Value("${stations.offline.maxAvailabilityChecks:3}")
+    private int maxAvailabilityChecks;
+
+    public FindResponse.Stop searchForChargingStation(double lat, double lon, double searchRadiusKm) {
+        double[] box = searchBox(lat, lon, searchRadiusKm);
+        double neLat = box[0], neLon = box[1], swLat = box[2], swLon = box[3];
+
+        List<ChargePointStation> stations;
+        if (offlineStationIndex.isReady()) {
+            stations = firstAvailable(nearestPage(lat, lon, offlineStationIndex.query(neLat, neLon, swLat, swLon, true)));
+        } else if (stationTileCache.isEnabled()) {
+            // Merge cached tiles covering the box; only missing tiles go to the map API,
+            // on pool threads that still count towards the caller's observation
+            Observation parent = observationRegistry.getCurrentObservation();
+            stations = stationTileCache.getStations(neLat, neLon, swLat, swLon, (tileNeLat, tileNeLon, tileSwLat, tileSwLon) ->
+                    Observation.tryScoped(parent, () -> fetchTile(tileNeLat, tileNeLon, tileSwLat, tileSwLon)));
+            if (stations != null) {
+                stations = nearestPage(lat, lon, stations);
+            } else if (!Thread.currentThread().isInterrupted()) {
+                // A failed or cut-off tile: ask for the box itself, as without the cache
+                stations = fetchStations(neLat, neLon, swLat, swLon, lat, lon, STATION_PAGE_SIZE);
+            }
+        } else {
+            stations = fetchStations(neLat, neLon, swLat, swLon, lat, lon, STATION_PAGE_SIZE);
+        }
+
+        return toStop(lat, lon, stations);
+    }
+
+    /**
+     * Non-blocking variant of {@link #searchForChargingStation}. Completes empty when no station is found.
+     */
+    public Mono<FindResponse.Stop> searchForChargingStationReactive(double lat, double lon, double searchRadiusKm) {
+        double[] box = searchBox(lat, lon, searchRadiusKm);
+        double neLat = box[0], neLon = box[1], swLat = box[2], swLon = box[3];
+
+        Mono<List<ChargePointStation>> stations;
+        if (offlineStationIndex.isReady()) {
+            List<ChargePointStation> candidates = nearestPage(lat, lon,
+                    offlineStationIndex.query(neLat, neLon, swLat, swLon, true));
+            stations = firstAvailableReactive(candidates);
+        } else if (stationTileCache.isEnabled()) {
+            stations = stationTileCache.getStationsReactive(neLat, neLon, swLat, swLon, this::fetchTileReactive)
+                    .map(merged -> nearestPage(lat, lon, merged))
+                    .switchIfEmpty(Mono.defer(() -> fetchStationsReactive(neLat, neLon, swLat, swLon, lat, lon, STATION_PAGE_SIZE)));
+        } else {
+            stations = fetchStationsReactive(neLat, neLon, swLat, swLon, lat, lon, STATION_PAGE_SIZE);
+        }
+
+        return stations.mapNotNull(list -> toStop(lat, lon, list));
+    }
+
+    /**
+     * Whether {@link #prefetchStations} can warm anything: only map API answers go through the tile cache.
+     */
+    boolean canPrefetch() {
+        return !offlineStationIndex.isReady() && stationTileCache.isEnabled();
+    }
+
+    /**
+     * Load the station tiles covering the box into the tile cache, so a later search inside
+     * it is answered without waiting for the map API. Missing tiles are fetched concurrently.
+     */
+    Mono<Void> prefetchStations(double[] box) {
+        return stationTileCache.getStationsReactive(box[0], box[1], box[2], box[3], this::fetchTileReactive).then();
+    }
+
+    private List<ChargePointStation> fetchTile(double neLat, double neLon, double swLat, double swLon) {
+        return fetchStations(neLat, neLon, swLat, swLon, (neLat + swLat) / 2.0, (neLon + swLon) / 2.0, stationTileCache.getPageSize());
+    }
+
+    private Mono<List<ChargePointStation>> fetchTileReactive(double neLat, double neLon, double swLat, double swLon) {
+        return fetchStationsReactive(neLat, neLon, swLat, swLon, (neLat + swLat) / 2.0, (neLon + swLon) / 2.0, stationTileCache.getPageSize());
+    }
+
+    /**
+     * Bounding box of searchRadiusKm around the point, as {neLat, neLon, swLat, swLon}.
+     */
+    double[] searchBox(double lat, double lon, double searchRadiusKm) {
+        double halfKm = searchRadiusKm / 2.0; // Use pre-calculated value
+        // Approximate conversion factors
+        double kmPerDegLat = 110.574; // ~ km per degree latitude
+        double kmPerDegLon = 111.320 * Math.cos(Math.toRadians(lat)); // ~ km per degree longitude at this latitude
+
+        // Convert km to degrees
+        double dLat = halfKm / kmPerDegLat;
+        double dLon = halfKm / kmPerDegLon;
+
+        // Bounding box corners
+        return new double[]{lat + dLat, lon + dLon, lat - dLat, lon - dLon};
+    }
+
+    /**
+     * Keep the map API contract for merged tiles: closest stations first, one page at most.
+     */
+    List<ChargePointStation> nearestPage(double lat, double lon, List<ChargePointStation> stations) {
+        stations.sort(Comparator.comparingDouble(station -> GeoUtils.haversineMiles(lat, lon,
+                station.getLat(), station.getLon())));
+        if (stations.size() > STATION_PAGE_SIZE) {
+            return new ArrayList<>(stations.subList(0, STATION_PAGE_SIZE));
+        }
+        return stations;
+    }
+
+    /**
+     * Move the closest candidate the map API still reports as available to the front.
+     * A failed check counts as available, so the offline data keeps working when the API is down.
+     * Returns an empty list when every checked candidate is taken, and the list unchanged when checks are off.
+     */
+    List<ChargePointStation> firstAvailable(List<ChargePointStation> candidates) {
+        if (!verifyAvailability) {
+            return candidates;
+        }
+        int checks = Math.min(maxAvailabilityChecks, candidates.size());
+        for (int i = 0; i < checks; i++) {
+            ChargePointStation candidate = candidates.get(i);
+            List<ChargePointStation> live = fetchAround(candidate);
+            if (live == null || !live.isEmpty()) {
+                return withFirst(candidates, i);
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Non-blocking variant of {@link #firstAvailable}. Candidates are still checked one at a time, closest first.
+     */
+    Mono<List<ChargePointStation>> firstAvailableReactive(List<ChargePointStation> candidates) {
+        if (!verifyAvailability) {
+            return Mono.just(candidates);
+        }
+        int checks = Math.min(maxAvailabilityChecks, candidates.size());
+        return Flux.range(0, checks)
+                .concatMap(i -> {
+                    ChargePointStation candidate = candidates.get(i);
+                    return fetchAroundReactive(candidate)
+                            .map(live -> !live.isEmpty())
+                            .defaultIfEmpty(true)
+                            .filter(available -> available)
+                            .map(available -> withFirst(candidates, i));
+                })
+                .next()
+                .defaultIfEmpty(new ArrayList<>());
+    }
+
+    private List<ChargePointStation> fetchAround(ChargePointStation station) {
+        return fetchStations(station.getLat() + AVAILABILITY_BOX_DEGREES, station.getLon() + AVAILABILITY_BOX_DEGREES,
+                station.getLat() - AVAILABILITY_BOX_DEGREES, station.getLon() - AVAILABILITY_BOX_DEGREES,
+                station.getLat(), station.getLon(), 1);
+    }
+
+    private Mono<List<ChargePointStation>> fetchAroundReactive(ChargePointStation station) {
+        return fetchStationsReactive(station.getLat() + AVAILABILITY_BOX_DEGREES, station.getLon() + AVAILABILITY_BOX_DEGREES,
+                station.getLat() - AVAILABILITY_BOX_DEGREES, station.getLon() - AVAILABILITY_BOX_DEGREES,
+                station.getLat(), station.getLon(), 1);
+    }
+
+    private static List<ChargePointStation> withFirst(List<ChargePointStation> stations, int index) {
+        if (index == 0) {
+            return stations;
+        }
+        List<ChargePointStation> reordered = new ArrayList<>(stations.size());
+        reordered.add(stations.get(index));
+        for (int i = 0; i < stations.size(); i++) {
+            if (i != index) {
+                reordered.add(stations.get(i));
+            }
+        }
+        return reordered;
+    }
+
+    FindResponse.Stop toStop(double lat, double lon, List<ChargePointStation> stations) {
+        if (stations == null || stations.isEmpty()) {
+            return null;
+        }
+
+        // Return the first (closest) station for the charging route logic
+        // But we'll add all stations to a separate list for frontend display
+        ChargePointStation firstStation = stations.get(0);
+
+        FindResponse.Stop stop = new FindResponse.Stop();
+        stop.setLat(firstStation.getLat());
+        stop.setLon(firstStation.getLon());
+        stop.setStationName(firstStation.getName());
+        stop.setDistanceFromRoutePointMiles(GeoUtils.haversineMiles(lat, lon, firstStation.getLat(), firstStation.getLon()));
+        stop.setDeviceId(firstStation.getDeviceId());
+        stop.setStale(firstStation.isStale());
+
+        // Raw station JSON is passed through as unparsed slices and only written out when serialized
+        stop.setRawStationData(firstStation.getRaw());
+        List<Object> allRawStations = new ArrayList<>(stations.size());
+        for (ChargePointStation station : stations) {
+            allRawStations.add(station.getRaw());
+        }
+        stop.setAllRawStations(allRawStations);
+        return stop;
+    }
+
+    /**
+     * Query the ChargePoint map API for available DC fast chargers inside a bounding box.
+     * Returns the stations sorted by distance to the reference point, or null on failure.
+     */
+    List<ChargePointStation> fetchStations(double neLat, double neLon, double swLat, double swLon,
+                                                   double referenceLat, double referenceLon, int pageSize) {
+        // Concurrent identical station queries wait for one upstream call; hedged attempts
+        // run on other threads, so they are attached to the caller's observation explicitly
+        String key = stationKey(neLat, neLon, swLat, swLon, referenceLat, referenceLon, pageSize);
+        Observation parent = observationRegistry.getCurrentObservation();
+        try {
+            return singleFlight.execute(key, () -> guard.call(key, () -> Observation.createNotStarted(PlanMetrics.UPSTREAM, observationRegistry)
+                    .parentObservation(parent)
+                    .lowCardinalityKeyValues(UPSTREAM_TAGS)
+                    .observeChecked(() -> fetchStationsOnce(neLat, neLon, swLat, swLon, referenceLat, referenceLon, pageSize))));
+        } catch (InterruptedException ex) {
+            // Our caller gave up on this search; not an upstream failure
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception ex) {
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            log.warn("Error calling ChargePoint API: {}", ex.toString());
+            log.debug("ChargePoint API call failed", ex);
+            return null;
+        }
+    }
+
+    /**
+     * One call to the map API; failures are thrown so the guard can count them.
+     */
+    private List<ChargePointStation> fetchStationsOnce(double neLat, double neLon, double swLat, double swLon,
+                                                       double referenceLat, double referenceLon, int pageSize) throws IOException {
+        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(
+                buildPayload(neLat, neLon, swLat, swLon, referenceLat, referenceLon, pageSize), buildHeaders());
+
+        ResponseEntity<byte[]> response;
+        bulkhead.acquire();
+        try {
+            response = restTemplate.postForEntity(chargepointApiUrl, entity, byte[].class);
+        } finally {
+            bulkhead.release();
+        }
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            throw new IllegalStateException("ChargePoint API returned " + response.getStatusCode());
+        }
+        return ChargePointJson.parseStations(objectMapper.getFactory(), response.getBody());
+    }
+
+    /**
+     * Non-blocking variant of {@link #fetchStations}. Completes empty on failure.
+     */
+    Mono<List<ChargePointStation>> fetchStationsReactive(double neLat, double neLon, double swLat, double swLon,
+                                                                 double referenceLat, double referenceLon, int pageSize) {
+        // Plans in the same batch share one call per identical station query
+        String key = stationKey(neLat, neLon, swLat, swLon, referenceLat, referenceLon, pageSize);
+        return UpstreamMemo.share(UpstreamMemo.STATIONS, key, () -> singleFlight.executeReactive(key,
+                        () -> guard.wrap(key, () -> fetchStationsUnshared(neLat, neLon, swLat, swLon, referenceLat, referenceLon, pageSize))))
+                .onErrorResume(ex -> {
+                    log.warn("Error calling ChargePoint API: {}", ex.toString());
+                    return Mono.empty();
+                });
+    }
+
+    private static String stationKey(double neLat, double neLon, double swLat, double swLon,
+                                     double referenceLat, double referenceLon, int pageSize) {
+        return neLat + "," + neLon + "," + swLat + "," + swLon + "," + referenceLat + "," + referenceLon + "," + pageSize;
+    }
+
+    private Mono<List<ChargePointStation>> fetchStationsUnshared(double neLat, double neLon, double swLat, double swLon,
+                                                                 double referenceLat, double referenceLon, int pageSize) {
+        HttpHeaders headers = buildHeaders();
+        return Observations.observe(observationRegistry, PlanMetrics.UPSTREAM, UPSTREAM_TAGS, bulkhead.wrap(webClient.post()
+                        .uri(chargepointApiUrl)
+                        .headers(h -> h.addAll(headers))
+                        .bodyValue(buildPayload(neLat, neLon, swLat, swLon, referenceLat, referenceLon, pageSize))
+                        .retrieve()
+                        .bodyToMono(byte[].class))
+                        .flatMap(body -> {
+                            try {
+                                return Mono.just(ChargePointJson.parseStations(objectMapper.getFactory(), body));
+                            } catch (Exception ex) {
+                                return Mono.error(ex);
+                            }
+                        }));
+    }
+
+    private Map<String, Object> buildPayload(double neLat, double neLon, double swLat, double swLon,
+                                             double referenceLat, double referenceLon, int pageSize) {
+        // Create payload matching your curl example structure
+        Map<String, Object> stationList = new HashMap<>();
+        stationList.put("screen_width", 417.5);
+        stationList.put("screen_height", 548);
+        stationList.put("ne_lat", neLat);
+        stationList.put("ne_lon", neLon);
+        stationList.put("sw_lat", swLat);
+        stationList.put("sw_lon", swLon);
+        stationList.put("page_size", pageSize);
+        stationList.put("page_offset", "");
+        stationList.put("sort_by", "distance");
+        stationList.put("reference_lat", referenceLat);
+        stationList.put("reference_lon", referenceLon);
+        stationList.put("include_map_bound", true);
+
+        // Add filters for available DC fast charging stations
+        Map<String, Object> filter = new HashMap<>();
+        filter.put("status_available", true);
+        filter.put("dc_fast_charging", true);
+        stationList.put("filter", filter);
+        stationList.put("bound_output", true);
+
+        return Map.of("station_list", stationList);
+    }
+
+    private HttpHeaders buildHeaders() {
+        // Set headers exactly as specified in your curl example
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("accept", "*/*");
+        headers.set("accept-language", "en-GB");
+        return headers;
+    }
+}
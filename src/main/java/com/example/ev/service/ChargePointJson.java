@@ -0,0 +1,108 @@
+package com.example.ev.service;
+
+import com.example.ev.util.RawJson;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader for ChargePoint station JSON, shared by the map API client and the
+ * offline station index.
+ */
+final class ChargePointJson {
+
+    private ChargePointJson() {
+    }
+
+    /**
+     * Stream through a map API response and pull out only the planning fields of each station in
+     * station_list.stations. A bare top-level array of stations (bulk export) is accepted too.
+     * The station objects themselves are kept as raw byte slices.
+     */
+    static List<ChargePointStation> parseStations(JsonFactory factory, byte[] body) throws IOException {
+        List<ChargePointStation> result = new ArrayList<>();
+        if (body == null) {
+            return result;
+        }
+        try (JsonParser parser = factory.createParser(body)) {
+            JsonToken first = parser.nextToken();
+            if (first == JsonToken.START_ARRAY) {
+                readStationArray(parser, body, result);
+                return result;
+            }
+            if (first != JsonToken.START_OBJECT) {
+                return result;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("station_list".equals(field) && value == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String listField = parser.getCurrentName();
+                        JsonToken listValue = parser.nextToken();
+                        if ("stations".equals(listField) && listValue == JsonToken.START_ARRAY) {
+                            readStationArray(parser, body, result);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void readStationArray(JsonParser parser, byte[] body, List<ChargePointStation> result) throws IOException {
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() == JsonToken.START_OBJECT) {
+                result.add(parseStation(parser, body));
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static ChargePointStation parseStation(JsonParser parser, byte[] body) throws IOException {
+        int start = (int) parser.getTokenLocation().getByteOffset();
+        Double lat = null, latitude = null, lon = null, longitude = null;
+        String name = null, stationName = null, name1 = null;
+        int deviceId = 0;
+        boolean dcFastCharging = true; // The map API is queried with the dc_fast_charging filter
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "lat" -> lat = parser.getValueAsDouble();
+                case "latitude" -> latitude = parser.getValueAsDouble();
+                case "lon" -> lon = parser.getValueAsDouble();
+                case "longitude" -> longitude = parser.getValueAsDouble();
+                case "name" -> name = parser.getValueAsString();
+                case "station_name" -> stationName = parser.getValueAsString();
+                case "name1" -> name1 = parser.getValueAsString();
+                case "device_id" -> deviceId = parser.getValueAsInt(0);
+                case "dc_fast_charging" -> dcFastCharging = parser.getValueAsBoolean(true);
+                default -> {
+                    // Not needed for planning; stays in the raw slice
+                }
+            }
+        }
+        int end = (int) parser.getCurrentLocation().getByteOffset();
+
+        double stationLat = lat != null ? lat : (latitude != null ? latitude : 0.0);
+        double stationLon = lon != null ? lon : (longitude != null ? longitude : 0.0);
+        String resolvedName = name != null ? name : (stationName != null ? stationName : (name1 != null ? name1 : "ChargePoint Station"));
+        return new ChargePointStation(stationLat, stationLon, resolvedName, deviceId, dcFastCharging,
+                new RawJson(body, start, end - start));
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.ev.service;
+
+import com.example.ev.util.RawJson;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The fields of a ChargePoint station the planner actually uses, plus the untouched
+ * station JSON for clients that want it. A stale station was served from the last known
+ * answer because the map API could not be reached.
+ */
+@Getter
+@AllArgsConstructor
+public class ChargePointStation {
+    private final double lat;
+    private final double lon;
+    private final String name;
+    private final int deviceId;
+    private final boolean dcFastCharging;
+    private final RawJson raw;
+    private final boolean stale;
+
+    public ChargePointStation(double lat, double lon, String name, int deviceId, boolean dcFastCharging, RawJson raw) {
+        this(lat, lon, name, deviceId, dcFastCharging, raw, false);
+    }
+
+    /**
+     * Key telling stations apart: the device id, or the position for a station without one.
+     */
+    public String identity() {
+        return deviceId != 0 ? "d" + deviceId : lat + "," + lon;
+    }
+
+    public ChargePointStation asStale() {
+        return stale ? this : new ChargePointStation(lat, lon, name, deviceId, dcFastCharging, raw, true);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.ev.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A station found in a leg's corridor, tagged with where it sits along the leg:
+ * the nearest polyline vertex, that vertex's distance from the leg start, and how far
+ * the station is off the route.
+ */
+@Getter
+@AllArgsConstructor
+public class CorridorStation {
+    private final ChargePointStation station;
+    private final int vertex;
+    private final double alongRouteMiles;
+    private final double offRouteMiles;
+}
@@ -0,0 +1,348 @@
+package com.example.ev.service;
+
+import com.example.ev.model.FindResponse;
+import com.example.ev.util.GeoUtils;
+import com.example.ev.util.RouteGeometry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Station search over a whole leg instead of one square per polyline point.
+ * The reachable part of the leg is cut into sections of chunkMiles, walked back from the
+ * last reachable vertex. Each section is one buffered envelope query (split in two while
+ * the map API page comes back full), and every station in it is tagged with its position
+ * along the leg. The stop is the station furthest along the route, so a leg usually needs
+ * one or two station calls instead of up to 50.
+ */
+@Component
+@RequiredArgsConstructor
+public class CorridorStationSearch {
+
+    private static final double KM_PER_DEG_LAT = 110.574;
+    private static final int MAX_SPLIT_DEPTH = 4;
+
+    private final ChargePointClient chargePointClient;
+    private final OfflineStationIndex offlineStationIndex;
+    private final ObservationRegistry observationRegistry;
+    @Qualifier("upstreamCallExecutor")
+    private final ExecutorService sectionExecutor;
+
+    @Value("${ev.corridor.enabled:false}")
+    private boolean enabled;
+
+    // Stations further than this from the route are ignored; never narrower than half the point-search radius
+    @Value("${ev.corridor.bufferKm:7.0}")
+    private double bufferKm;
+
+    @Value("${ev.corridor.chunkMiles:60.0}")
+    private double chunkMiles;
+
+    @Value("${ev.corridor.pageSize:200}")
+    private int pageSize;
+
+    // Sections queried at once when collecting a whole leg
+    @Value("${ev.corridor.parallelism:16}")
+    private int parallelism;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Pick the charging stop for the current leg, recording every tagged candidate and the
+     * battery level on arrival in the plan state. Returns null when the corridor has no station.
+     */
+    FindResponse.Stop findStation(PlanState state) {
+        RouteGeometry geometry = state.legGeometry;
+        double corridorKm = corridorKm(state.searchRadiusKm);
+        for (int[] section : sections(geometry, state.lastReachableIndex)) {
+            List<ChargePointStation> stations = fetchSection(geometry, section[0], section[1], corridorKm, 0);
+            List<CorridorStation> tagged = tag(geometry, section[0], section[1], corridorKm, stations);
+            List<CorridorStation> ranked = rank(state, tagged);
+            if (ranked.isEmpty()) {
+                continue;
+            }
+            CorridorStation chosen = offlineStationIndex.isReady()
+                    ? firstConfirmed(ranked, chargePointClient.firstAvailable(stationsOf(ranked)))
+                    : ranked.get(0);
+            if (chosen != null) {
+                return accept(state, tagged, chosen);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Non-blocking variant of {@link #findStation}. Sections are still queried one at a time,
+     * nearest the end of the reachable range first, and the search stops at the first hit.
+     */
+    Mono<FindResponse.Stop> findStationReactive(PlanState state) {
+        RouteGeometry geometry = state.legGeometry;
+        double corridorKm = corridorKm(state.searchRadiusKm);
+        return Flux.fromIterable(sections(geometry, state.lastReachableIndex))
+                .concatMap(section -> fetchSectionReactive(geometry, section[0], section[1], corridorKm, 0)
+                        .flatMap(stations -> {
+                            List<CorridorStation> tagged = tag(geometry, section[0], section[1], corridorKm, stations);
+                            List<CorridorStation> ranked = rank(state, tagged);
+                            if (ranked.isEmpty()) {
+                                return Mono.empty();
+                            }
+                            Mono<Optional<CorridorStation>> chosen = offlineStationIndex.isReady()
+                                    ? chargePointClient.firstAvailableReactive(stationsOf(ranked))
+                                            .map(available -> Optional.ofNullable(firstConfirmed(ranked, available)))
+                                    : Mono.just(Optional.of(ranked.get(0)));
+                            return chosen.filter(Optional::isPresent)
+                                    .map(found -> accept(state, tagged, found.get()));
+                        }))
+                .next();
+    }
+
+    /**
+     * Every station in the corridor of the whole leg, sorted by position along it.
+     * Unlike {@link #findStation} this queries every section, so a leg costs about
+     * totalMiles / chunkMiles station calls. Up to parallelism sections are queried at once,
+     * on pool threads that still count towards the caller's observation.
+     */
+    public List<CorridorStation> collect(RouteGeometry geometry, double searchRadiusKm) throws InterruptedException {
+        double corridorKm = corridorKm(searchRadiusKm);
+        List<int[]> sections = sections(geometry, geometry.size() - 1);
+        Observation parent = observationRegistry.getCurrentObservation();
+        List<Future<List<CorridorStation>>> futures = new ArrayList<>(sections.size());
+        List<CorridorStation> all = new ArrayList<>();
+        try {
+            for (int k = 0; k < sections.size(); k++) {
+                while (futures.size() < sections.size() && futures.size() < k + Math.max(1, parallelism)) {
+                    int[] section = sections.get(futures.size());
+                    futures.add(sectionExecutor.submit(() -> Observation.tryScoped(parent, () -> tag(geometry,
+                            section[0], section[1], corridorKm, fetchSection(geometry, section[0], section[1], corridorKm, 0)))));
+                }
+                all.addAll(futures.get(k).get());
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } finally {
+            // Sections still queued are dropped; running calls finish, as they may be shared with other plans
+            for (Future<List<CorridorStation>> future : futures) {
+                future.cancel(false);
+            }
+        }
+        return alongRouteOrder(all);
+    }
+
+    /**
+     * Non-blocking variant of {@link #collect}. Up to parallelism sections are queried at once.
+     */
+    public Mono<List<CorridorStation>> collectReactive(RouteGeometry geometry, double searchRadiusKm) {
+        double corridorKm = corridorKm(searchRadiusKm);
+        return Flux.fromIterable(sections(geometry, geometry.size() - 1))
+                .flatMapSequential(section -> fetchSectionReactive(geometry, section[0], section[1], corridorKm, 0)
+                        .map(stations -> tag(geometry, section[0], section[1], corridorKm, stations)), Math.max(1, parallelism))
+                .collectList()
+                .map(sections -> {
+                    List<CorridorStation> all = new ArrayList<>();
+                    sections.forEach(all::addAll);
+                    return alongRouteOrder(all);
+                });
+    }
+
+    private double corridorKm(double searchRadiusKm) {
+        return Math.max(bufferKm, searchRadiusKm / 2.0);
+    }
+
+    /**
+     * Sort by position along the leg; a station seen from two neighbouring sections keeps its closer snap.
+     */
+    private static List<CorridorStation> alongRouteOrder(List<CorridorStation> all) {
+        Map<String, CorridorStation> byStation = new HashMap<>();
+        for (CorridorStation candidate : all) {
+            byStation.merge(candidate.getStation().identity(), candidate,
+                    (first, second) -> second.getOffRouteMiles() < first.getOffRouteMiles() ? second : first);
+        }
+        List<CorridorStation> ordered = new ArrayList<>(byStation.values());
+        ordered.sort(Comparator.comparingDouble(CorridorStation::getAlongRouteMiles)
+                .thenComparingDouble(CorridorStation::getOffRouteMiles));
+        return ordered;
+    }
+
+    /**
+     * Vertex ranges [from, to] of chunkMiles each, from the last reachable vertex back to the leg start.
+     */
+    private List<int[]> sections(RouteGeometry geometry, int lastReachableIndex) {
+        List<int[]> sections = new ArrayList<>();
+        int to = lastReachableIndex;
+        while (to > 0) {
+            double startMiles = geometry.distanceToMiles(to) - chunkMiles;
+            int from = startMiles <= 0 ? 0 : Math.min(to - 1, geometry.lastIndexWithin(startMiles));
+            sections.add(new int[]{from, to});
+            to = from;
+        }
+        if (sections.isEmpty()) {
+            sections.add(new int[]{0, 0});
+        }
+        return sections;
+    }
+
+    private List<ChargePointStation> fetchSection(RouteGeometry geometry, int from, int to, double corridorKm, int depth) {
+        double[] box = envelope(geometry, from, to, corridorKm);
+        if (offlineStationIndex.isReady()) {
+            return offlineStationIndex.query(box[0], box[1], box[2], box[3], true);
+        }
+        int mid = (from + to) / 2;
+        List<ChargePointStation> stations = chargePointClient.fetchStations(box[0], box[1], box[2], box[3],
+                geometry.lat(mid), geometry.lon(mid), pageSize);
+        if (stations == null || !isTruncated(stations, from, to, depth)) {
+            return stations == null ? new ArrayList<>() : stations;
+        }
+        // A full page may have cut off stations: split the envelope and query both halves
+        List<ChargePointStation> merged = new ArrayList<>(fetchSection(geometry, from, mid, corridorKm, depth + 1));
+        merged.addAll(fetchSection(geometry, mid, to, corridorKm, depth + 1));
+        return merged;
+    }
+
+    private Mono<List<ChargePointStation>> fetchSectionReactive(RouteGeometry geometry, int from, int to,
+                                                                double corridorKm, int depth) {
+        if (offlineStationIndex.isReady()) {
+            return Mono.fromSupplier(() -> fetchSection(geometry, from, to, corridorKm, depth));
+        }
+        double[] box = envelope(geometry, from, to, corridorKm);
+        int mid = (from + to) / 2;
+        return chargePointClient.fetchStationsReactive(box[0], box[1], box[2], box[3],
+                        geometry.lat(mid), geometry.lon(mid), pageSize)
+                .defaultIfEmpty(new ArrayList<>())
+                .flatMap(stations -> {
+                    if (!isTruncated(stations, from, to, depth)) {
+                        return Mono.just(stations);
+                    }
+                    return fetchSectionReactive(geometry, from, mid, corridorKm, depth + 1)
+                            .zipWith(fetchSectionReactive(geometry, mid, to, corridorKm, depth + 1), (first, second) -> {
+                                List<ChargePointStation> merged = new ArrayList<>(first);
+                                merged.addAll(second);
+                                return merged;
+                            });
+                });
+    }
+
+    private boolean isTruncated(List<ChargePointStation> stations, int from, int to, int depth) {
+        return stations.size() >= pageSize && to - from > 1 && depth < MAX_SPLIT_DEPTH;
+    }
+
+    /**
+     * Bounding box of vertices [from, to] widened by corridorKm, as {neLat, neLon, swLat, swLon}.
+     */
+    private double[] envelope(RouteGeometry geometry, int from, int to, double corridorKm) {
+        double minLat = Double.POSITIVE_INFINITY, minLon = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
+        for (int i = from; i <= to; i++) {
+            minLat = Math.min(minLat, geometry.lat(i));
+            minLon = Math.min(minLon, geometry.lon(i));
+            maxLat = Math.max(maxLat, geometry.lat(i));
+            maxLon = Math.max(maxLon, geometry.lon(i));
+        }
+        double dLat = corridorKm / KM_PER_DEG_LAT;
+        // Widen longitude at the latitude nearest the pole, where a degree is shortest
+        double widestLat = Math.min(89.0, Math.max(Math.abs(minLat), Math.abs(maxLat)));
+        double dLon = corridorKm / (111.320 * Math.cos(Math.toRadians(widestLat)));
+        return new double[]{maxLat + dLat, maxLon + dLon, minLat - dLat, minLon - dLon};
+    }
+
+    /**
+     * Snap each station to its nearest vertex in [from, to] and keep those within corridorKm of the route.
+     * The same station returned by two split halves is kept once.
+     */
+    private List<CorridorStation> tag(RouteGeometry geometry, int from, int to, double corridorKm,
+                                      List<ChargePointStation> stations) {
+        double corridorMiles = corridorKm / GeoUtils.KM_PER_MILE;
+        Set<String> seen = new HashSet<>();
+        List<CorridorStation> tagged = new ArrayList<>();
+        for (ChargePointStation station : stations) {
+            if (!seen.add(station.identity())) {
+                continue;
+            }
+            int nearest = geometry.nearestVertex(station.getLat(), station.getLon(), from, to);
+            double nearestMiles = geometry.milesTo(nearest, station.getLat(), station.getLon());
+            if (nearestMiles <= corridorMiles) {
+                tagged.add(new CorridorStation(station, nearest, geometry.distanceToMiles(nearest), nearestMiles));
+            }
+        }
+        return tagged;
+    }
+
+    /**
+     * Stations within the leg's effective range, counting the drive off the route to reach them,
+     * furthest along the route first; closer to the route breaks ties.
+     */
+    private List<CorridorStation> rank(PlanState state, List<CorridorStation> tagged) {
+        List<CorridorStation> ranked = new ArrayList<>(tagged.size());
+        for (CorridorStation candidate : tagged) {
+            if (candidate.getAlongRouteMiles() + candidate.getOffRouteMiles() <= state.effectiveRange) {
+                ranked.add(candidate);
+            }
+        }
+        ranked.sort(Comparator.comparingDouble(CorridorStation::getAlongRouteMiles).reversed()
+                .thenComparingDouble(CorridorStation::getOffRouteMiles));
+        return ranked;
+    }
+
+    static List<ChargePointStation> stationsOf(List<CorridorStation> ranked) {
+        List<ChargePointStation> stations = new ArrayList<>(ranked.size());
+        for (CorridorStation candidate : ranked) {
+            stations.add(candidate.getStation());
+        }
+        return stations;
+    }
+
+    private static CorridorStation firstConfirmed(List<CorridorStation> ranked, List<ChargePointStation> available) {
+        if (available.isEmpty()) {
+            return null;
+        }
+        ChargePointStation first = available.get(0);
+        for (CorridorStation candidate : ranked) {
+            if (candidate.getStation() == first) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private FindResponse.Stop accept(PlanState state, List<CorridorStation> tagged, CorridorStation chosen) {
+        state.corridorCandidates = tagged;
+        state.searchFromIndex = Math.min(chosen.getVertex(), state.lastReachableIndex);
+
+        // Battery is drawn down to the station's position along the leg, not to the last reachable
+        // point, plus the drive from the route out to the station
+        double remainingRangeAtStation = state.legRequest.getCurrentRangeMiles()
+                - chosen.getAlongRouteMiles() - chosen.getOffRouteMiles();
+        state.batteryPercentageOnArrival = (remainingRangeAtStation / state.fullRange) * 100.0;
+
+        return toStop(state.legGeometry, chosen, tagged);
+    }
+
+    /**
+     * Stop for a chosen corridor station, listing its neighbours for display, closest first.
+     */
+    FindResponse.Stop toStop(RouteGeometry geometry, CorridorStation chosen, List<CorridorStation> neighbours) {
+        ChargePointStation station = chosen.getStation();
+        List<ChargePointStation> nearby = chargePointClient.nearestPage(station.getLat(), station.getLon(), stationsOf(neighbours));
+        nearby.remove(station);
+        nearby.add(0, station);
+        return chargePointClient.toStop(geometry.lat(chosen.getVertex()), geometry.lon(chosen.getVertex()), nearby);
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.ev.service;
+
+import com.example.ev.config.PlanMetrics;
+import com.example.ev.model.FindRequest;
+import com.example.ev.util.Bulkhead;
+import com.example.ev.util.GeoKernel;
+import com.example.ev.util.Observations;
+import com.example.ev.util.RouteGeometry;
+import com.example.ev.util.SingleFlight;
+import com.example.ev.util.UpstreamGuard;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.common.KeyValues;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Google Routes API access, blocking (RestTemplate) and non-blocking (WebClient).
+ * Both share the request payload, response parsing and the route cache.
+ * Route data is returned as a map with "distanceMeters", "encodedPolyline" and "geometry",
+ * plus "stale" when the guard served the last known route because the API was unavailable.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class GoogleRoutesClient {
+
+    private static final KeyValues UPSTREAM_TAGS = KeyValues.of("upstream", "google");
+
+    @Qualifier("googleRestTemplate")
+    private final RestTemplate restTemplate;
+    @Qualifier("googleWebClient")
+    private final WebClient webClient;
+    @Qualifier("googleBulkhead")
+    private final Bulkhead bulkhead;
+    @Qualifier("routeSingleFlight")
+    private final SingleFlight<Map<String, Object>> singleFlight;
+    @Qualifier("googleGuard")
+    private final UpstreamGuard<Map<String, Object>> guard;
+    private final RouteCache routeCache;
+    private final PolylineSimplifier polylineSimplifier;
+    private final ObjectMapper objectMapper;
+    private final ObservationRegistry observationRegistry;
+
+    @Value("${google.routes.api.key}")
+    private String googleApiKey;
+
+    @Value("${google.routes.api.url:https://routes.googleapis.com/directions/v2:computeRoutes}")
+    private String routesApiUrl;
+
+    // haversine or equirectangular (see GeoKernel.Distance for the error bound)
+    @Value("${ev.geo.segmentDistance:haversine}")
+    private String segmentDistance;
+
+    public Map<String, Object> callGoogleRoutesApi(FindRequest req) {
+        // Popular corridors are served from the route cache without a paid upstream call
+        Map<String, Object> cached = routeCache.get(req);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Concurrent requests for the same route wait for one upstream call; hedged attempts
+        // run on other threads, so they are attached to the caller's observation explicitly
+        String key = routeCache.keyFor(req);
+        Observation parent = observationRegistry.getCurrentObservation();
+        try {
+            return singleFlight.execute(key, () -> guard.call(key, () -> Observation.createNotStarted(PlanMetrics.UPSTREAM, observationRegistry)
+                    .parentObservation(parent)
+                    .lowCardinalityKeyValues(UPSTREAM_TAGS)
+                    .observeChecked(() -> fetchRoute(req))));
+        } catch (Exception ex) {
+            log.warn("Error calling Google Routes API: {}", ex.toString());
+            log.debug("Google Routes API call failed", ex);
+            return null;
+        }
+    }
+
+    /**
+     * One call to the Routes API; failures are thrown so the guard can count them.
+     */
+    private Map<String, Object> fetchRoute(FindRequest req) throws IOException {
+        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(buildPayload(req), buildHeaders());
+
+        ResponseEntity<byte[]> response;
+        bulkhead.acquire();
+        try {
+            response = restTemplate.postForEntity(routesApiUrl, entity, byte[].class);
+        } finally {
+            bulkhead.release();
+        }
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            throw new IllegalStateException("Google Routes API returned " + response.getStatusCode());
+        }
+
+        Map<String, Object> result = parseResponse(response.getBody());
+        if (result != null) {
+            routeCache.put(req, result);
+        }
+        return result;
+    }
+
+    /**
+     * Non-blocking variant of {@link #callGoogleRoutesApi}. Completes empty when no route is available.
+     */
+    public Mono<Map<String, Object>> callGoogleRoutesApiReactive(FindRequest req) {
+        Map<String, Object> cached = routeCache.get(req);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+
+        // Plans in the same batch share one call per route
+        String key = routeCache.keyFor(req);
+        return UpstreamMemo.share(UpstreamMemo.ROUTES, key, () -> singleFlight.executeReactive(key,
+                        () -> guard.wrap(key, () -> fetchRouteReactive(req))))
+                .onErrorResume(ex -> {
+                    log.warn("Error calling Google Routes API: {}", ex.toString());
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Map<String, Object>> fetchRouteReactive(FindRequest req) {
+        HttpHeaders headers = buildHeaders();
+        return Observations.observe(observationRegistry, PlanMetrics.UPSTREAM, UPSTREAM_TAGS, bulkhead.wrap(webClient.post()
+                        .uri(routesApiUrl)
+                        .headers(h -> h.addAll(headers))
+                        .bodyValue(buildPayload(req))
+                        .retrieve()
+                        .bodyToMono(byte[].class))
+                        .flatMap(body -> {
+                            try {
+                                return Mono.justOrEmpty(parseResponse(body));
+                            } catch (Exception ex) {
+                                return Mono.error(ex);
+                            }
+                        }))
+                .doOnNext(result -> routeCache.put(req, result));
+    }
+
+    private Map<String, Object> buildPayload(FindRequest req) {
+        // Create request payload matching the exact structure from your curl example
+        Map<String, Object> payload = new HashMap<>();
+
+        Map<String, Object> origin = Map.of(
+                "location", Map.of(
+                        "latLng", Map.of(
+                                "latitude", req.getOrigin().latitude,
+                                "longitude", req.getOrigin().longitude
+                        )
+                )
+        );
+
+        Map<String, Object> destination = Map.of(
+                "location", Map.of(
+                        "latLng", Map.of(
+                                "latitude", req.getDestination().latitude,
+                                "longitude", req.getDestination().longitude
+                        )
+                )
+        );
+
+        payload.put("origin", origin);
+        payload.put("destination", destination);
+
+        // Add intermediates if provided
+        if (req.getIntermediates() != null && !req.getIntermediates().isEmpty()) {
+            List<Map<String, Object>> intermediates = new ArrayList<>();
+            for (FindRequest.LatLng intermediate : req.getIntermediates()) {
+                Map<String, Object> intermediateLocation = Map.of(
+                        "location", Map.of(
+                                "latLng", Map.of(
+                                        "latitude", intermediate.latitude,
+                                        "longitude", intermediate.longitude
+                                )
+                        )
+                );
+                intermediates.add(intermediateLocation);
+            }
+            payload.put("intermediates", intermediates);
+        }
+
+        payload.put("travelMode", "DRIVE");
+        payload.put("routingPreference", "TRAFFIC_AWARE_OPTIMAL");
+//        payload.put("polylineQuality", "HIGH_QUALITY");
+        return payload;
+    }
+
+    private HttpHeaders buildHeaders() {
+        // Set headers exactly as specified in your curl example
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("X-Goog-Api-Key", googleApiKey);
+        headers.set("X-Goog-FieldMask", "routes.distanceMeters,routes.polyline.encodedPolyline");
+        return headers;
+    }
+
+    /**
+     * Stream through the response and read only routes[0].distanceMeters and
+     * routes[0].polyline.encodedPolyline, skipping everything else without building a tree.
+     */
+    private Map<String, Object> parseResponse(byte[] body) throws IOException {
+        if (body == null) {
+            return null;
+        }
+        double distanceMeters = 0;
+        String encodedPolyline = null;
+        boolean routeFound = false;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (!"routes".equals(field) || value != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                // Only the first route is used
+                if (parser.nextToken() == JsonToken.START_OBJECT) {
+                    routeFound = true;
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String routeField = parser.getCurrentName();
+                        JsonToken routeValue = parser.nextToken();
+                        if ("distanceMeters".equals(routeField)) {
+                            distanceMeters = parser.getValueAsDouble(0);
+                        } else if ("polyline".equals(routeField) && routeValue == JsonToken.START_OBJECT) {
+                            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                                String polylineField = parser.getCurrentName();
+                                parser.nextToken();
+                                if ("encodedPolyline".equals(polylineField)) {
+                                    encodedPolyline = parser.getValueAsString();
+                                } else {
+                                    parser.skipChildren();
+                                }
+                            }
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+                break;
+            }
+        }
+        if (!routeFound) return null;
+
+        // Decode straight into the packed geometry index; no per-vertex objects
+        String polyline = encodedPolyline != null ? encodedPolyline : "";
+        RouteGeometry decoded = Observation.createNotStarted(PlanMetrics.DECODE, observationRegistry)
+                .observe(() -> RouteGeometry.decode(polyline, GeoKernel.Distance.of(segmentDistance)));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("distanceMeters", distanceMeters);
+        Observation.createNotStarted(PlanMetrics.SIMPLIFY, observationRegistry).observe(() -> {
+            // Indexed once per leg, shared through the route cache
+            result.put("geometry", polylineSimplifier.forTraversal(decoded));
+            result.put("encodedPolyline", polylineSimplifier.forResponse(decoded, polyline));
+        });
+        log.debug("Decoded route polyline with {} points, {} kept for traversal",
+                decoded.size(), ((RouteGeometry) result.get("geometry")).size());
+        return result;
+    }
+}
@@ -0,0 +1,358 @@
+package com.example.ev.service;
+
+import com.example.ev.model.FindRequest;
+import com.example.ev.model.FindResponse;
+import com.example.ev.util.RouteGeometry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * Plans every charging stop of a trip at once instead of leg by leg.
+ * The graph has the origin, each corridor station in along-route order and the destination
+ * as nodes. An edge exists when the next node is within the effective range on departure,
+ * using the same bufferPercent margin and charge-to-90% rule as the greedy planner.
+ * Dijkstra finds the plan with the fewest stops (smallest detour on ties) or the smallest
+ * detour, and only that plan goes to the routing API, as one route through all stops.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class GraphRoutePlanner {
+
+    private static final double CHARGE_TO_PERCENT = 90.0;
+    private static final double METERS_PER_MILE = 1609.344;
+    // Rounds of "drop the taken stations and plan again" when the offline index is in use
+    private static final int MAX_REPLANS = 3;
+    // A stop counts as on the confirmed route when a vertex passes within this distance
+    private static final double CONFIRM_THRESHOLD_MILES = 0.5;
+
+    private final CorridorStationSearch corridorStationSearch;
+    private final ChargePointClient chargePointClient;
+    private final GoogleRoutesClient googleRoutesClient;
+    private final OfflineStationIndex offlineStationIndex;
+
+    // greedy: stop as late as possible and re-route per stop; graph: plan all stops on the first route
+    @Value("${ev.planner.mode:greedy}")
+    private String mode;
+
+    // stops: fewest stops, then smallest detour; detour: smallest detour, then fewest stops
+    @Value("${ev.planner.objective:stops}")
+    private String objective;
+
+    public boolean isEnabled() {
+        return "graph".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * Complete the plan prepared for the first leg. Returns false and leaves the state untouched
+     * when no sequence of corridor stations reaches the destination.
+     */
+    boolean plan(PlanState state) throws InterruptedException {
+        List<CorridorStation> candidates = corridorStationSearch.collect(state.legGeometry, state.searchRadiusKm);
+        List<CorridorStation> available = new ArrayList<>(candidates);
+        List<CorridorStation> path = null;
+        for (int round = 0; round <= MAX_REPLANS; round++) {
+            path = shortestPath(state, available);
+            if (path == null || !offlineStationIndex.isReady()) {
+                break;
+            }
+            List<CorridorStation> taken = new ArrayList<>();
+            for (CorridorStation stop : path) {
+                if (chargePointClient.firstAvailable(List.of(stop.getStation())).isEmpty()) {
+                    taken.add(stop);
+                }
+            }
+            if (taken.isEmpty()) {
+                break;
+            }
+            available.removeAll(taken);
+            path = null;
+        }
+        if (path == null) {
+            log.debug("No charging plan over {} corridor stations, falling back to leg-by-leg search", candidates.size());
+            return false;
+        }
+
+        state.routeCandidates = candidates;
+        FindRequest confirmRequest = apply(state, candidates, path);
+        confirm(state, path, googleRoutesClient.callGoogleRoutesApi(confirmRequest));
+        return true;
+    }
+
+    /**
+     * Non-blocking variant of {@link #plan}.
+     */
+    Mono<Boolean> planReactive(PlanState state) {
+        return corridorStationSearch.collectReactive(state.legGeometry, state.searchRadiusKm)
+                .flatMap(candidates -> availablePathReactive(state, new ArrayList<>(candidates), 0)
+                        .flatMap(path -> {
+                            if (path.isEmpty()) {
+                                log.debug("No charging plan over {} corridor stations, falling back to leg-by-leg search", candidates.size());
+                                return Mono.just(false);
+                            }
+                            state.routeCandidates = candidates;
+                            FindRequest confirmRequest = apply(state, candidates, path.get());
+                            return googleRoutesClient.callGoogleRoutesApiReactive(confirmRequest)
+                                    .map(Optional::of)
+                                    .defaultIfEmpty(Optional.empty())
+                                    .map(routeData -> {
+                                        confirm(state, path.get(), routeData.orElse(null));
+                                        return true;
+                                    });
+                        }));
+    }
+
+    /**
+     * Plan the prepared first leg again over corridor stations collected earlier, without the
+     * availability checks. Only the route through the chosen stops is fetched. Returns false
+     * and leaves the state untouched when no sequence of the stations reaches the destination.
+     */
+    boolean replan(PlanState state, List<CorridorStation> candidates) {
+        List<CorridorStation> path = shortestPath(state, candidates);
+        if (path == null) {
+            return false;
+        }
+        state.routeCandidates = candidates;
+        FindRequest confirmRequest = apply(state, candidates, path);
+        confirm(state, path, googleRoutesClient.callGoogleRoutesApi(confirmRequest));
+        return true;
+    }
+
+    private Mono<Optional<List<CorridorStation>>> availablePathReactive(PlanState state, List<CorridorStation> available, int round) {
+        List<CorridorStation> path = shortestPath(state, available);
+        if (path == null || !offlineStationIndex.isReady()) {
+            return Mono.just(Optional.ofNullable(path));
+        }
+        return Flux.fromIterable(path)
+                .concatMap(stop -> chargePointClient.firstAvailableReactive(List.of(stop.getStation()))
+                        .filter(List::isEmpty)
+                        .map(none -> stop))
+                .collectList()
+                .flatMap(taken -> {
+                    if (taken.isEmpty()) {
+                        return Mono.just(Optional.of(path));
+                    }
+                    if (round >= MAX_REPLANS) {
+                        return Mono.just(Optional.<List<CorridorStation>>empty());
+                    }
+                    available.removeAll(taken);
+                    return availablePathReactive(state, available, round + 1);
+                });
+    }
+
+    /**
+     * Dijkstra over origin (node 0), candidates (1..n, sorted along the route) and destination (n + 1).
+     * Edges only go forward, and stop at the first node beyond the effective range.
+     * Returns the chosen stations in driving order, or null if the destination is unreachable.
+     */
+    private List<CorridorStation> shortestPath(PlanState state, List<CorridorStation> candidates) {
+        int n = candidates.size();
+        RouteGeometry geometry = state.legGeometry;
+        double[] along = new double[n + 2];
+        double[] off = new double[n + 2];
+        for (int k = 0; k < n; k++) {
+            along[k + 1] = candidates.get(k).getAlongRouteMiles();
+            off[k + 1] = candidates.get(k).getOffRouteMiles();
+        }
+        along[n + 1] = geometry.totalMiles();
+
+        double chargedEffectiveRange = state.fullRange * (CHARGE_TO_PERCENT / 100.0) * (1 - state.bufferPercent);
+        boolean fewestStops = !"detour".equalsIgnoreCase(objective);
+
+        double[] primary = new double[n + 2];
+        double[] secondary = new double[n + 2];
+        int[] previous = new int[n + 2];
+        boolean[] settled = new boolean[n + 2];
+        Arrays.fill(primary, Double.POSITIVE_INFINITY);
+        Arrays.fill(secondary, Double.POSITIVE_INFINITY);
+        Arrays.fill(previous, -1);
+        primary[0] = 0.0;
+        secondary[0] = 0.0;
+
+        // Entries are {primary, secondary, node}; stale entries are skipped when polled
+        PriorityQueue<double[]> queue = new PriorityQueue<>(Comparator.<double[]>comparingDouble(e -> e[0])
+                .thenComparingDouble(e -> e[1]));
+        queue.add(new double[]{0.0, 0.0, 0});
+
+        while (!queue.isEmpty()) {
+            double[] entry = queue.poll();
+            int u = (int) entry[2];
+            if (settled[u]) {
+                continue;
+            }
+            settled[u] = true;
+            if (u == n + 1) {
+                break;
+            }
+            double effectiveRange = u == 0 ? state.effectiveRange : chargedEffectiveRange;
+            for (int v = u + 1; v <= n + 1; v++) {
+                if (along[v] - along[u] > effectiveRange) {
+                    break;
+                }
+                double legMiles = along[v] - along[u] + off[u] + off[v];
+                if (legMiles > effectiveRange || settled[v]) {
+                    continue;
+                }
+                double stops = v == n + 1 ? 0.0 : 1.0;
+                double detour = 2 * off[v];
+                double candidatePrimary = primary[u] + (fewestStops ? stops : detour);
+                double candidateSecondary = secondary[u] + (fewestStops ? detour : stops);
+                if (candidatePrimary < primary[v]
+                        || (candidatePrimary == primary[v] && candidateSecondary < secondary[v])) {
+                    primary[v] = candidatePrimary;
+                    secondary[v] = candidateSecondary;
+                    previous[v] = u;
+                    queue.add(new double[]{candidatePrimary, candidateSecondary, v});
+                }
+            }
+        }
+
+        if (previous[n + 1] < 0) {
+            return null;
+        }
+        List<CorridorStation> path = new ArrayList<>();
+        for (int node = previous[n + 1]; node > 0; node = previous[node]) {
+            path.add(0, candidates.get(node - 1));
+        }
+        return path;
+    }
+
+    /**
+     * Fill in stops, battery levels and the route sequence from the along-route estimates,
+     * and return the request that routes the whole plan in one call.
+     */
+    private FindRequest apply(PlanState state, List<CorridorStation> candidates, List<CorridorStation> path) {
+        FindResponse response = state.response;
+        RouteGeometry geometry = state.legGeometry;
+        FindRequest firstLeg = state.legRequest;
+
+        // Intermediates the route passes are ordered by where it passes them
+        List<FindRequest.LatLng> intermediates = state.remainingIntermediates;
+        int[] projected = geometry.projectIntermediates(intermediates, 1.0);
+        Integer[] order = new Integer[projected.length];
+        for (int k = 0; k < order.length; k++) {
+            order[k] = k;
+        }
+        Arrays.sort(order, Comparator.comparingInt(k -> projected[k] < 1 ? Integer.MAX_VALUE : projected[k]));
+
+        List<FindRequest.LatLng> waypoints = new ArrayList<>();
+        int nextIntermediate = 0;
+        double rangeOnDeparture = firstLeg.getCurrentRangeMiles();
+        double previousAlong = 0.0;
+        double previousOff = 0.0;
+
+        for (CorridorStation chosen : path) {
+            while (nextIntermediate < order.length && projected[order[nextIntermediate]] >= 1
+                    && projected[order[nextIntermediate]] <= chosen.getVertex()) {
+                addIntermediate(response, waypoints, intermediates.get(order[nextIntermediate++]));
+            }
+
+            double legMiles = chosen.getAlongRouteMiles() - previousAlong + previousOff + chosen.getOffRouteMiles();
+            FindResponse.Stop stop = corridorStationSearch.toStop(geometry, chosen, candidates);
+            stop.setBatteryPercentageOnArrival(Math.max(0.0, (rangeOnDeparture - legMiles) / state.fullRange * 100.0));
+            stop.setBatteryPercentageAfterCharging(CHARGE_TO_PERCENT);
+            state.addStop(stop);
+            response.getRouteSequence().add(new FindResponse.RoutePoint(stop.getLat(), stop.getLon(), "charging_station"));
+            waypoints.add(latLng(stop.getLat(), stop.getLon()));
+
+            rangeOnDeparture = state.fullRange * (CHARGE_TO_PERCENT / 100.0);
+            previousAlong = chosen.getAlongRouteMiles();
+            previousOff = chosen.getOffRouteMiles();
+        }
+        while (nextIntermediate < order.length) {
+            addIntermediate(response, waypoints, intermediates.get(order[nextIntermediate++]));
+        }
+        intermediates.clear();
+
+        double remainingMiles = geometry.totalMiles() - previousAlong + previousOff;
+        setArrival(state, rangeOnDeparture, remainingMiles);
+
+        FindRequest.LatLng destination = firstLeg.getDestination();
+        response.getRouteSequence().add(new FindResponse.RoutePoint(destination.latitude, destination.longitude, "destination"));
+        response.setReachableWithoutCharging(true);
+        state.done = true;
+
+        FindRequest confirmRequest = new FindRequest();
+        confirmRequest.setOrigin(firstLeg.getOrigin());
+        confirmRequest.setDestination(destination);
+        confirmRequest.setIntermediates(waypoints);
+        confirmRequest.setCurrentRangeMiles(firstLeg.getCurrentRangeMiles());
+        confirmRequest.setSoc(firstLeg.getSoc());
+        return confirmRequest;
+    }
+
+    /**
+     * Replace the along-route estimates with distances from the route through the stops.
+     * Without a confirmed route the estimates and the original polyline are kept.
+     */
+    private void confirm(PlanState state, List<CorridorStation> path, Map<String, Object> routeData) {
+        if (routeData == null || routeData.get("geometry") == null) {
+            log.warn("Could not confirm charging plan with Google Routes API, keeping estimated legs");
+            return;
+        }
+        state.useRoute(routeData);
+        FindResponse response = state.response;
+        response.setEncodedPolyline((String) routeData.get("encodedPolyline"));
+        RouteGeometry confirmed = (RouteGeometry) routeData.get("geometry");
+        double confirmedMiles = ((Number) routeData.getOrDefault("distanceMeters", 0)).doubleValue() / METERS_PER_MILE;
+        log.debug("Charging plan with {} stops confirmed: {} miles", path.size(), confirmedMiles);
+
+        List<FindRequest.LatLng> stopPoints = new ArrayList<>();
+        for (FindResponse.Stop stop : response.getStops()) {
+            stopPoints.add(latLng(stop.getLat(), stop.getLon()));
+        }
+        int[] stopVertices = confirmed.projectIntermediates(stopPoints, CONFIRM_THRESHOLD_MILES);
+        for (int k = 0; k < stopVertices.length; k++) {
+            if (stopVertices[k] < 1 || (k > 0 && stopVertices[k] < stopVertices[k - 1])) {
+                return; // Stops not found in order on the routed polyline; keep the estimates
+            }
+        }
+
+        double rangeOnDeparture = state.legRequest.getCurrentRangeMiles();
+        double previousMiles = 0.0;
+        for (int k = 0; k < stopVertices.length; k++) {
+            double reachedMiles = confirmed.distanceToMiles(stopVertices[k]);
+            double legMiles = reachedMiles - previousMiles;
+            response.getStops().get(k).setBatteryPercentageOnArrival(
+                    Math.max(0.0, (rangeOnDeparture - legMiles) / state.fullRange * 100.0));
+            if (legMiles > rangeOnDeparture * (1 - state.bufferPercent)) {
+                log.debug("Confirmed leg {} of {} miles is beyond the buffered range", k + 1, legMiles);
+            }
+            rangeOnDeparture = state.fullRange * (CHARGE_TO_PERCENT / 100.0);
+            previousMiles = reachedMiles;
+        }
+        setArrival(state, rangeOnDeparture, confirmed.totalMiles() - previousMiles);
+    }
+
+    private void setArrival(PlanState state, double rangeOnDeparture, double remainingMiles) {
+        double remainingRange = rangeOnDeparture - remainingMiles;
+        state.response.setRemainingRangeAfterRoute(remainingRange);
+        state.response.setFinalSOCAtDestination(Math.max(0.0, remainingRange / state.fullRange * 100.0));
+    }
+
+    private static void addIntermediate(FindResponse response, List<FindRequest.LatLng> waypoints,
+                                        FindRequest.LatLng intermediate) {
+        response.getRouteSequence().add(new FindResponse.RoutePoint(
+                intermediate.latitude, intermediate.longitude, "intermediate"));
+        waypoints.add(intermediate);
+    }
+
+    private static FindRequest.LatLng latLng(double lat, double lon) {
+        FindRequest.LatLng point = new FindRequest.LatLng();
+        point.latitude = lat;
+        point.longitude = lon;
+        return point;
+    }
+}
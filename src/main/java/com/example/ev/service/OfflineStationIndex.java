@@ -0,0 +1,219 @@
+package com.example.ev.service;
+
+import com.example.ev.util.RawJson;
+import com.example.ev.util.StationRTree;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional in-memory station index loaded from a bulk station export.
+ * Supports a CSV file (header with lat, lon, name, device_id and optionally dc_fast_charging)
+ * or a JSON file (a bare station array or a map API style station_list response).
+ * The file is re-read in the background when it changes and the new index is swapped in
+ * atomically, so queries never wait for a reload.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OfflineStationIndex {
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${stations.offline.enabled:false}")
+    private boolean enabled;
+
+    @Value("${stations.offline.file:}")
+    private String file;
+
+    @Value("${stations.offline.reloadIntervalSeconds:60}")
+    private long reloadIntervalSeconds;
+
+    private volatile Snapshot snapshot;
+    private ScheduledExecutorService reloader;
+
+    private static class Snapshot {
+        final List<ChargePointStation> stations;
+        final StationRTree tree;
+        final long lastModifiedMillis;
+
+        Snapshot(List<ChargePointStation> stations, long lastModifiedMillis) {
+            this.stations = stations;
+            this.lastModifiedMillis = lastModifiedMillis;
+            double[] lat = new double[stations.size()];
+            double[] lon = new double[stations.size()];
+            for (int i = 0; i < stations.size(); i++) {
+                lat[i] = stations.get(i).getLat();
+                lon[i] = stations.get(i).getLon();
+            }
+            this.tree = new StationRTree(lat, lon);
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled || file == null || file.isBlank()) {
+            return;
+        }
+        reloadIfChanged();
+        reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "station-index-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reloader.scheduleWithFixedDelay(this::reloadIfChanged, reloadIntervalSeconds, reloadIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+
+    /**
+     * True once a station file has been loaded; until then callers use the live map API.
+     */
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    public int size() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.stations.size();
+    }
+
+    /**
+     * Stations inside the box, optionally restricted to DC fast chargers. Order is unspecified.
+     */
+    public List<ChargePointStation> query(double neLat, double neLon, double swLat, double swLon, boolean dcFastOnly) {
+        Snapshot current = snapshot;
+        List<ChargePointStation> result = new ArrayList<>();
+        if (current == null) {
+            return result;
+        }
+        current.tree.search(swLat, swLon, neLat, neLon, i -> {
+            ChargePointStation station = current.stations.get(i);
+            if (!dcFastOnly || station.isDcFastCharging()) {
+                result.add(station);
+            }
+        });
+        return result;
+    }
+
+    void reloadIfChanged() {
+        Path path = Paths.get(file);
+        try {
+            long lastModified = Files.getLastModifiedTime(path).toMillis();
+            Snapshot current = snapshot;
+            if (current != null && current.lastModifiedMillis == lastModified) {
+                return;
+            }
+            List<ChargePointStation> stations = load(path);
+            snapshot = new Snapshot(stations, lastModified);
+            log.info("Loaded {} stations from {}", stations.size(), path);
+        } catch (Exception ex) {
+            // Keep serving the previous index if the new file cannot be read
+            log.error("Error loading station file {}: {}", path, ex.toString());
+        }
+    }
+
+    private List<ChargePointStation> load(Path path) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        if (path.getFileName().toString().toLowerCase().endsWith(".csv")) {
+            return parseCsv(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return ChargePointJson.parseStations(objectMapper.getFactory(), bytes);
+    }
+
+    private List<ChargePointStation> parseCsv(String content) throws IOException {
+        List<ChargePointStation> stations = new ArrayList<>();
+        String[] lines = content.split("\r?\n");
+        if (lines.length == 0) {
+            return stations;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> header = splitCsvLine(lines[0]);
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(), i);
+        }
+
+        for (int n = 1; n < lines.length; n++) {
+            if (lines[n].isBlank()) {
+                continue;
+            }
+            List<String> row = splitCsvLine(lines[n]);
+            double lat = Double.parseDouble(column(row, columns, "lat", "0"));
+            double lon = Double.parseDouble(column(row, columns, "lon", "0"));
+            String name = column(row, columns, "name", "ChargePoint Station");
+            int deviceId = Integer.parseInt(column(row, columns, "device_id", "0"));
+            boolean dcFast = Boolean.parseBoolean(column(row, columns, "dc_fast_charging", "true"));
+
+            // Give CSV rows the same pass-through JSON shape as map API stations
+            Map<String, Object> raw = new LinkedHashMap<>();
+            raw.put("device_id", deviceId);
+            raw.put("lat", lat);
+            raw.put("lon", lon);
+            raw.put("name", name);
+            raw.put("dc_fast_charging", dcFast);
+            byte[] rawBytes = objectMapper.writeValueAsBytes(raw);
+
+            stations.add(new ChargePointStation(lat, lon, name, deviceId, dcFast, new RawJson(rawBytes, 0, rawBytes.length)));
+        }
+        return stations;
+    }
+
+    private static String column(List<String> row, Map<String, Integer> columns, String name, String defaultValue) {
+        Integer index = columns.get(name);
+        if (index == null || index >= row.size() || row.get(index).isBlank()) {
+            return defaultValue;
+        }
+        return row.get(index).trim();
+    }
+
+    private static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
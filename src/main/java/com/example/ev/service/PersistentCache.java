@@ -0,0 +1,315 @@
+package com.example.ev.service;
+
+import com.example.ev.util.MappedRecordStore;
+import com.example.ev.util.RawJson;
+import com.example.ev.util.RouteGeometry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Optional on-disk copy of the route and station tile caches, so a restarted instance answers
+ * popular corridors from cache instead of going upstream for all of them again. Entries keep
+ * the expiry time of the in-memory entry they mirror. Routes are stored decoded (coordinates
+ * and cumulative distances), so a disk hit skips the polyline decode as well as the call.
+ * Writes are queued to a single background writer, which also compacts the file when it is
+ * full; reads made while it compacts count as misses instead of waiting for it. Any failure
+ * disables the cache and the planner carries on with the in-memory caches only.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PersistentCache {
+
+    @Qualifier("persistentCacheWriter")
+    private final ExecutorService writer;
+
+    @Value("${ev.persistentCache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ev.persistentCache.file:cache/ev-cache.db}")
+    private String file;
+
+    // Size of the mapped file; compaction keeps live entries within half of it
+    @Value("${ev.persistentCache.maxMegabytes:256}")
+    private int maxMegabytes;
+
+    private volatile MappedRecordStore store;
+    private volatile boolean compacting;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong droppedWrites = new AtomicLong();
+
+    /**
+     * A stored value and the time it expires.
+     */
+    public static final class Hit<T> {
+        private final T value;
+        private final long expiresAtMillis;
+
+        Hit(T value, long expiresAtMillis) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public long getExpiresAtMillis() {
+            return expiresAtMillis;
+        }
+    }
+
+    @PostConstruct
+    void open() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, maxMegabytes * 1024L * 1024L);
+            store = MappedRecordStore.open(Paths.get(file), capacity, System.currentTimeMillis());
+            log.info("Opened persistent cache {} with {} live entries in {} ms", file, store.size(),
+                    (System.nanoTime() - started) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Persistent cache {} could not be opened, continuing without it: {}", file, e.toString());
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        // Let queued writes land before the file is closed
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Persistent cache {} closed with writes still queued", file);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeStore();
+    }
+
+    private void closeStore() {
+        MappedRecordStore current = store;
+        store = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                log.warn("Persistent cache {} could not be closed cleanly: {}", file, e.toString());
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return store != null;
+    }
+
+    /**
+     * Route data stored under the key, as {@link RouteCache} holds it, or null.
+     */
+    public Hit<Map<String, Object>> getRoute(String key) {
+        MappedRecordStore.Record record = get("r|" + key);
+        if (record == null) {
+            return null;
+        }
+        ByteBuffer in = record.getPayload();
+        Map<String, Object> routeData = new HashMap<>();
+        routeData.put("distanceMeters", in.getDouble());
+        routeData.put("encodedPolyline", readString(in));
+        routeData.put("geometry", RouteGeometry.readFrom(in));
+        return new Hit<>(routeData, record.getExpiresAtMillis());
+    }
+
+    public void putRoute(String key, Map<String, Object> routeData, long expiresAtMillis) {
+        if (store == null || !(routeData.get("geometry") instanceof RouteGeometry geometry)) {
+            return;
+        }
+        write("r|" + key, () -> {
+            byte[] polyline = bytes((String) routeData.get("encodedPolyline"));
+            ByteBuffer out = ByteBuffer.allocate(Double.BYTES + stringBytes(polyline) + geometry.serializedBytes());
+            out.putDouble(((Number) routeData.getOrDefault("distanceMeters", 0.0)).doubleValue());
+            writeString(out, polyline);
+            geometry.writeTo(out);
+            return out.array();
+        }, expiresAtMillis);
+    }
+
+    /**
+     * Stations of the tile stored under the key, or null.
+     */
+    public Hit<List<ChargePointStation>> getTile(String key) {
+        MappedRecordStore.Record record = get("t|" + key);
+        if (record == null) {
+            return null;
+        }
+        ByteBuffer in = record.getPayload();
+        int count = in.getInt();
+        List<ChargePointStation> stations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double lat = in.getDouble();
+            double lon = in.getDouble();
+            int deviceId = in.getInt();
+            boolean dcFastCharging = in.get() != 0;
+            String name = readString(in);
+            int rawLength = in.getInt();
+            RawJson raw = null;
+            if (rawLength >= 0) {
+                byte[] rawBytes = new byte[rawLength];
+                in.get(rawBytes);
+                raw = new RawJson(rawBytes, 0, rawLength);
+            }
+            stations.add(new ChargePointStation(lat, lon, name, deviceId, dcFastCharging, raw));
+        }
+        return new Hit<>(stations, record.getExpiresAtMillis());
+    }
+
+    public void putTile(String key, List<ChargePointStation> stations, long expiresAtMillis) {
+        if (store == null) {
+            return;
+        }
+        write("t|" + key, () -> {
+            byte[][] names = new byte[stations.size()][];
+            int size = Integer.BYTES;
+            for (int i = 0; i < stations.size(); i++) {
+                ChargePointStation station = stations.get(i);
+                names[i] = bytes(station.getName());
+                RawJson raw = station.getRaw();
+                size += 2 * Double.BYTES + Integer.BYTES + 1 + stringBytes(names[i]) + Integer.BYTES + (raw == null ? 0 : raw.length());
+            }
+            ByteBuffer out = ByteBuffer.allocate(size);
+            out.putInt(stations.size());
+            for (int i = 0; i < stations.size(); i++) {
+                ChargePointStation station = stations.get(i);
+                out.putDouble(station.getLat());
+                out.putDouble(station.getLon());
+                out.putInt(station.getDeviceId());
+                out.put((byte) (station.isDcFastCharging() ? 1 : 0));
+                writeString(out, names[i]);
+                RawJson raw = station.getRaw();
+                out.putInt(raw == null ? -1 : raw.length());
+                if (raw != null) {
+                    raw.writeTo(out);
+                }
+            }
+            return out.array();
+        }, expiresAtMillis);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getDroppedWrites() {
+        return droppedWrites.get();
+    }
+
+    public int size() {
+        MappedRecordStore current = store;
+        return current == null ? 0 : current.size();
+    }
+
+    public long usedBytes() {
+        MappedRecordStore current = store;
+        return current == null ? 0 : current.usedBytes();
+    }
+
+    private MappedRecordStore.Record get(String key) {
+        MappedRecordStore current = store;
+        if (current == null) {
+            return null;
+        }
+        if (compacting) {
+            misses.incrementAndGet(); // Not worth waiting for the store's lock
+            return null;
+        }
+        MappedRecordStore.Record record = current.get(key, System.currentTimeMillis());
+        (record != null ? hits : misses).incrementAndGet();
+        return record;
+    }
+
+    /**
+     * Queue a write; the payload is built on the writer thread. Dropped when the queue is full.
+     */
+    private void write(String key, Supplier<byte[]> payload, long expiresAtMillis) {
+        try {
+            writer.execute(() -> put(key, payload.get(), expiresAtMillis));
+        } catch (RejectedExecutionException e) {
+            droppedWrites.incrementAndGet();
+        }
+    }
+
+    // Runs on the writer thread only
+    private void put(String key, byte[] payload, long expiresAtMillis) {
+        MappedRecordStore current = store;
+        if (current == null) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            if (current.needsCompaction(key, payload.length)) {
+                compacting = true;
+                try {
+                    current.compact(now);
+                } finally {
+                    compacting = false;
+                }
+            }
+            current.put(key, expiresAtMillis, payload, now);
+        } catch (RuntimeException e) {
+            log.warn("Persistent cache {} failed, continuing without it: {}", file, e.toString());
+            closeStore();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringBytes(byte[] value) {
+        return Integer.BYTES + (value == null ? 0 : value.length);
+    }
+
+    // Length-prefixed UTF-8; length -1 is null
+    private static void writeString(ByteBuffer out, byte[] value) {
+        out.putInt(value == null ? -1 : value.length);
+        if (value != null) {
+            out.put(value);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        in.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.ev.service;
+
+import com.example.ev.model.FindRequest;
+import com.example.ev.model.FindResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Plans kept for what-if re-planning, under the planId returned with the response.
+ * A handle holds the original request, buffer and response, the route first fetched for it and,
+ * when the graph planner made the plan, the corridor stations along that route, which is
+ * everything a re-plan with a different starting range, SOC or buffer needs. Handles are evicted least-recently-used once
+ * maxEntries is reached, and expire after ttlSeconds.
+ */
+@Component
+public class PlanHandles {
+
+    @Value("${ev.planHandles.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ev.planHandles.maxEntries:1000}")
+    private int maxEntries;
+
+    @Value("${ev.planHandles.ttlSeconds:900}")
+    private long ttlSeconds;
+
+    // Access-ordered LinkedHashMap gives us LRU eviction; guarded by synchronized(handles)
+    private final LinkedHashMap<String, Handle> handles = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Handle> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    static final class Handle {
+        final FindRequest request;
+        final double bufferPercent;
+        final FindResponse response;
+        final Map<String, Object> route;
+        final List<CorridorStation> candidates; // null unless the graph planner made the plan
+        final long expiresAtMillis;
+
+        Handle(FindRequest request, double bufferPercent, FindResponse response, Map<String, Object> route,
+               List<CorridorStation> candidates, long expiresAtMillis) {
+            this.request = request;
+            this.bufferPercent = bufferPercent;
+            this.response = response;
+            this.route = route;
+            this.candidates = candidates;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    /**
+     * Keep a finished plan and return its planId, or null when handles are disabled.
+     */
+    String register(PlanState state) {
+        if (!enabled || state.route == null) {
+            return null;
+        }
+        String planId = UUID.randomUUID().toString();
+        Handle handle = new Handle(state.request, state.bufferPercent, state.response, state.route, state.routeCandidates,
+                System.currentTimeMillis() + ttlSeconds * 1000L);
+        synchronized (handles) {
+            handles.put(planId, handle);
+        }
+        return planId;
+    }
+
+    /**
+     * The handle for a planId, or null if it is unknown or has expired.
+     */
+    Handle get(String planId) {
+        long now = System.currentTimeMillis();
+        synchronized (handles) {
+            Handle handle = handles.get(planId);
+            if (handle != null && handle.expiresAtMillis <= now) {
+                handles.remove(planId);
+                return null;
+            }
+            return handle;
+        }
+    }
+
+    public int size() {
+        synchronized (handles) {
+            return handles.size();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.ev.service;
+
+import com.example.ev.model.FindRequest;
+import com.example.ev.model.FindResponse;
+import com.example.ev.util.GeoUtils;
+import com.example.ev.util.RouteGeometry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Mutable state of one charging plan as it moves from leg to leg.
+ * The planning steps in {@link RouteService} only read and update this state; the
+ * blocking and reactive drivers decide how the upstream calls between steps are made.
+ */
+class PlanState {
+
+    /** The request the plan was made for. */
+    final FindRequest request;
+    final FindResponse response;
+    final double fullRange;
+    final double bufferPercent;
+    final List<FindRequest.LatLng> remainingIntermediates;
+
+    /** Route data of the whole trip as first fetched, kept with the plan handle for re-plans. */
+    final Map<String, Object> route;
+
+    /** Request for the current leg: original request first, then station-to-destination legs. */
+    FindRequest legRequest;
+    double effectiveRange;
+
+    /** Pending charging-station search for the current leg. */
+    double[] searchPoint;
+    List<double[]> fallbackCandidates;
+    double searchRadiusKm;
+    double batteryPercentageOnArrival;
+
+    /** Current leg geometry and how far along it the effective range reaches. */
+    RouteGeometry legGeometry;
+    int lastReachableIndex;
+
+    /** Earliest vertex the leg's station search looked around: the last fallback point, or the corridor stop's vertex. */
+    int searchFromIndex;
+
+    /** Stations tagged along the current leg by the corridor search, once it has run. */
+    List<CorridorStation> corridorCandidates;
+
+    /** Next search point estimated while re-routing from a stop, and the box prefetched around it. */
+    double[] prefetchPoint;
+    double[] prefetchBox;
+
+    /** Corridor stations of the first route, once the graph planner has planned over them. */
+    List<CorridorStation> routeCandidates;
+
+    /** True once the response is complete and no more upstream calls are needed. */
+    boolean done;
+
+    /** Called with the response so far after each planning step; a streamed plan emits what was added. */
+    Consumer<FindResponse> progress = response -> { };
+
+    /**
+     * Vertex of the current leg nearest the point, among the vertices the leg's station search
+     * covered: searchFromIndex to lastReachableIndex, widened by the search radius. On a route
+     * that loops back or runs close to itself, a stop never snaps to another pass of it.
+     */
+    int nearestSearchedVertex(double lat, double lon) {
+        double marginMiles = searchRadiusKm / GeoUtils.KM_PER_MILE;
+        int from = legGeometry.lastIndexWithin(legGeometry.distanceToMiles(searchFromIndex) - marginMiles);
+        int to = legGeometry.lastIndexWithin(legGeometry.distanceToMiles(lastReachableIndex) + marginMiles);
+        return legGeometry.nearestVertex(lat, lon, from, to);
+    }
+
+    /** Flag the response when the route data is a last known route served while Google was unavailable. */
+    void useRoute(Map<String, Object> routeData) {
+        if (Boolean.TRUE.equals(routeData.get("stale"))) {
+            response.setStale(true);
+        }
+    }
+
+    /** Add a charging stop to the response, flagging the response when the stop's station data is stale. */
+    void addStop(FindResponse.Stop stop) {
+        response.getStops().add(stop);
+        if (stop.isStale()) {
+            response.setStale(true);
+        }
+    }
+
+    PlanState(FindRequest request, FindResponse response, Map<String, Object> route, double fullRange,
+              double bufferPercent, double effectiveRange, List<FindRequest.LatLng> remainingIntermediates) {
+        this.request = request;
+        this.legRequest = request;
+        this.response = response;
+        this.route = route;
+        this.fullRange = fullRange;
+        this.bufferPercent = bufferPercent;
+        this.effectiveRange = effectiveRange;
+        this.remainingIntermediates = remainingIntermediates;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.ev.service;
+
+import com.example.ev.model.FindResponse;
+import com.example.ev.model.PlanEvent;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Events of one streamed plan. Receives the response after each planning step and emits
+ * the stops and route points added since the previous step, so the stream carries every
+ * item of the final response exactly once and in the same order.
+ */
+class PlanStream implements Consumer<FindResponse> {
+
+    private final Sinks.Many<PlanEvent> events = Sinks.many().unicast().onBackpressureBuffer();
+    private boolean routeSent;
+    private int stopsSent;
+    private int routePointsSent;
+
+    Flux<PlanEvent> events() {
+        return events.asFlux();
+    }
+
+    @Override
+    public void accept(FindResponse response) {
+        if (!routeSent) {
+            emit(PlanEvent.ROUTE, new PlanEvent.Route(response.getTotalRouteDistanceMiles(),
+                    response.getEncodedPolyline(), !response.isReachableWithoutCharging()));
+            routeSent = true;
+        }
+        List<FindResponse.Stop> stops = response.getStops();
+        for (; stopsSent < stops.size(); stopsSent++) {
+            emit(PlanEvent.STOP, stops.get(stopsSent));
+        }
+        List<FindResponse.RoutePoint> routeSequence = response.getRouteSequence();
+        for (; routePointsSent < routeSequence.size(); routePointsSent++) {
+            emit(PlanEvent.ROUTE_POINT, routeSequence.get(routePointsSent));
+        }
+    }
+
+    /**
+     * Emit whatever the last step added, then the summary, and end the stream.
+     */
+    void complete(FindResponse response) {
+        accept(response);
+        emit(PlanEvent.SUMMARY, new PlanEvent.Summary(response.isReachableWithoutCharging(),
+                response.getTotalRouteDistanceMiles(), response.getRemainingRangeAfterRoute(),
+                response.getFinalSOCAtDestination(), response.getStops().size(), response.getEncodedPolyline(), response.getPlanId(),
+                response.isStale()));
+        events.tryEmitComplete();
+    }
+
+    // Planning steps run one after another, so emissions never overlap
+    private void emit(String type, Object data) {
+        events.tryEmitNext(new PlanEvent(type, data));
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.ev.service;
+
+import com.example.ev.util.RouteGeometry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Optional Douglas-Peucker simplification of decoded routes, with one tolerance for the
+ * geometry the planner walks and another for the polyline returned to clients. Both start
+ * from the full decoded route, so neither loses detail to the other.
+ */
+@Component
+public class PolylineSimplifier {
+
+    private static final double METERS_PER_MILE = 1609.344;
+
+    @Value("${ev.simplify.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ev.simplify.toleranceMeters:10.0}")
+    private double toleranceMeters;
+
+    // Longest along-route gap between kept vertices; bounds how much earlier the last reachable vertex can be
+    @Value("${ev.simplify.maxSpacingMiles:0.5}")
+    private double maxSpacingMiles;
+
+    // 0 returns the routing API's polyline unchanged
+    @Value("${ev.simplify.responseToleranceMeters:0}")
+    private double responseToleranceMeters;
+
+    /**
+     * Geometry for traversal, station search and splicing; the decoded geometry when disabled.
+     */
+    public RouteGeometry forTraversal(RouteGeometry decoded) {
+        if (!enabled) {
+            return decoded;
+        }
+        return decoded.simplify(toleranceMeters / METERS_PER_MILE, maxSpacingMiles);
+    }
+
+    /**
+     * Encoded polyline for the response; the routing API's polyline when no response tolerance is set.
+     */
+    public String forResponse(RouteGeometry decoded, String encodedPolyline) {
+        if (responseToleranceMeters <= 0) {
+            return encodedPolyline;
+        }
+        RouteGeometry simplified = decoded.simplify(responseToleranceMeters / METERS_PER_MILE, Double.MAX_VALUE);
+        return simplified.encode(0, simplified.size());
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.ev.service;
+
+import com.example.ev.model.FindRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-memory cache for Google Routes results.
+ * Keys are origin, destination and intermediates snapped to a grid so that trips
+ * starting a few metres apart on a popular corridor share one upstream call.
+ * Entries are evicted least-recently-used once maxEntries is reached, and expire after ttlSeconds.
+ * With the persistent cache enabled, entries are also written to disk, and a memory miss is
+ * answered from disk when the route is still there (after eviction or a restart).
+ */
+@Component
+@RequiredArgsConstructor
+public class RouteCache {
+
+    private final PersistentCache persistentCache;
+
+    @Value("${google.routes.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${google.routes.cache.maxEntries:1000}")
+    private int maxEntries;
+
+    @Value("${google.routes.cache.ttlSeconds:900}")
+    private long ttlSeconds;
+
+    // Grid size in degrees used to snap coordinates (0.001 deg is roughly 110 m)
+    @Value("${google.routes.cache.gridDegrees:0.001}")
+    private double gridDegrees;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Access-ordered LinkedHashMap gives us LRU eviction; guarded by synchronized(entries)
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    private static class Entry {
+        final Map<String, Object> routeData;
+        final long expiresAtMillis;
+
+        Entry(Map<String, Object> routeData, long expiresAtMillis) {
+            this.routeData = routeData;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Look up a cached route for this request. Returns null on a miss or when the cache is disabled.
+     */
+    public Map<String, Object> get(FindRequest req) {
+        if (!enabled) {
+            return null;
+        }
+        String key = keyFor(req);
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAtMillis > now) {
+                hits.incrementAndGet();
+                return entry.routeData;
+            }
+            if (entry != null) {
+                entries.remove(key); // Expired
+            }
+        }
+        PersistentCache.Hit<Map<String, Object>> stored = persistentCache.getRoute(persistentKey(key));
+        if (stored != null) {
+            synchronized (entries) {
+                entries.put(key, new Entry(stored.getValue(), Math.min(stored.getExpiresAtMillis(), now + ttlSeconds * 1000L)));
+            }
+            hits.incrementAndGet();
+            return stored.getValue();
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Store route data (decoded polyline, encoded polyline and distanceMeters) for this request.
+     * The stored map is shared between callers and must not be modified afterwards.
+     */
+    public void put(FindRequest req, Map<String, Object> routeData) {
+        if (!enabled || routeData == null) {
+            return;
+        }
+        String key = keyFor(req);
+        long expiresAt = System.currentTimeMillis() + ttlSeconds * 1000L;
+        synchronized (entries) {
+            entries.put(key, new Entry(routeData, expiresAt));
+        }
+        persistentCache.putRoute(persistentKey(key), routeData, expiresAt);
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    String keyFor(FindRequest req) {
+        StringBuilder key = new StringBuilder(64);
+        appendSnapped(key, req.getOrigin());
+        key.append('>');
+        if (req.getIntermediates() != null) {
+            for (FindRequest.LatLng intermediate : req.getIntermediates()) {
+                appendSnapped(key, intermediate);
+                key.append('>');
+            }
+        }
+        appendSnapped(key, req.getDestination());
+        return key.toString();
+    }
+
+    // The grid is part of the key so a changed grid never reads routes snapped to the old one
+    private String persistentKey(String key) {
+        return gridDegrees + "|" + key;
+    }
+
+    private void appendSnapped(StringBuilder key, FindRequest.LatLng point) {
+        key.append(Math.round(point.latitude / gridDegrees))
+                .append(',')
+                .append(Math.round(point.longitude / gridDegrees));
+    }
+}
@@ -1,34 +1,273 @@
 package com.example.ev.service;
 
+import com.example.ev.config.PlanMetrics;
 import com.example.ev.model.FindRequest;
 import com.example.ev.model.FindResponse;
-import com.example.ev.util.Polyline;
+import com.example.ev.model.PlanEvent;
+import com.example.ev.model.ReplanRequest;
+import com.example.ev.util.Observations;
+import com.example.ev.util.RouteGeometry;
+import com.example.ev.util.SingleFlight;
+import io.micrometer.common.KeyValues;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class RouteService {
 
-    private final RestTemplate restTemplate;
-
-    @Value("${google.routes.api.key}")
-    private String googleApiKey;
-
-    @Value("${chargepoint.map.api.url}")
-    private String chargepointApiUrl;
+    private final GoogleRoutesClient googleRoutesClient;
+    private final ChargePointClient chargePointClient;
+    private final CorridorStationSearch corridorStationSearch;
+    private final GraphRoutePlanner graphRoutePlanner;
+    private final RouteSplicer routeSplicer;
+    private final SpeculativePrefetch speculativePrefetch;
+    private final PlanHandles planHandles;
+    @Qualifier("stationSearchExecutor")
+    private final ExecutorService stationSearchExecutor;
+    @Qualifier("planSingleFlight")
+    private final SingleFlight<FindResponse> planSingleFlight;
+    private final ObservationRegistry observationRegistry;
+    private final PlanMetrics planMetrics;
 
     @Value("${ev.bufferPercent:0.30}")
     private double bufferPercent;
 
+    // Number of one plan's fallback station searches in flight at once; 1 keeps the sequential scan
+    @Value("${ev.fallbackSearch.parallelism:8}")
+    private int fallbackParallelism;
+
     private final double KM_PER_MILE = 1.609344;
+    private static final int MAX_FALLBACK_SEARCH_ATTEMPTS = 50;
 
     public FindResponse findChargingPlan(FindRequest req) throws Exception {
+        // Identical plans requested at the same moment are computed once
+        return Observation.createNotStarted(PlanMetrics.PLAN, observationRegistry)
+                .lowCardinalityKeyValue("api", "blocking")
+                .observeChecked(() -> planSingleFlight.execute(planKey(req), () -> plan(req, bufferPercent)));
+    }
+
+    /**
+     * What-if re-plan of an earlier trip with another starting range, SOC or buffer. The stored
+     * route is traversed again by the planner that made the plan: the graph planner picks the
+     * stops over the corridor stations kept with the plan, the greedy planner searches leg by
+     * leg again with its station and route calls served from the caches. The trip is not routed
+     * again, and when nothing changed the stored plan is returned as it is. If the graph planner
+     * finds no stops over those stations that reach the destination, the trip is planned from
+     * scratch. Returns null when the planId is unknown or has expired.
+     */
+    public FindResponse replan(String planId, ReplanRequest changes) throws Exception {
+        PlanHandles.Handle handle = planHandles.get(planId);
+        if (handle == null) {
+            return null;
+        }
+        FindRequest req = new FindRequest();
+        req.setOrigin(handle.request.getOrigin());
+        req.setDestination(handle.request.getDestination());
+        req.setIntermediates(handle.request.getIntermediates());
+        req.setCurrentRangeMiles(changes.getCurrentRangeMiles() != null
+                ? changes.getCurrentRangeMiles() : handle.request.getCurrentRangeMiles());
+        req.setSoc(changes.getSoc() != null ? changes.getSoc() : handle.request.getSoc());
+        double buffer = changes.getBufferPercent() != null ? changes.getBufferPercent() : bufferPercent;
+        if (req.getCurrentRangeMiles() <= 0 || req.getSoc() == null || req.getSoc() <= 0 || req.getSoc() > 100) {
+            throw new IllegalArgumentException("currentRangeMiles must be positive and soc in (0, 100]");
+        }
+        if (buffer < 0 || buffer >= 1) {
+            throw new IllegalArgumentException("bufferPercent must be in [0, 1)");
+        }
+        // Same inputs as the stored plan: nothing to re-plan
+        if (req.getCurrentRangeMiles() == handle.request.getCurrentRangeMiles()
+                && req.getSoc().equals(handle.request.getSoc()) && buffer == handle.bufferPercent) {
+            return handle.response;
+        }
+
+        return Observation.createNotStarted(PlanMetrics.PLAN, observationRegistry)
+                .lowCardinalityKeyValue("api", "replan")
+                .observeChecked(() -> {
+                    PlanState state = stage(PlanMetrics.TRAVERSAL, () -> startPlan(req, handle.route, buffer));
+                    if (handle.candidates == null) {
+                        planLegs(state);
+                    } else if (!state.done && !graphRoutePlanner.replan(state, handle.candidates)) {
+                        log.debug("No re-plan over {} corridor stations, planning the trip again", handle.candidates.size());
+                        return plan(req, buffer);
+                    }
+                    state.response.setPlanId(planId);
+                    return state.response;
+                });
+    }
+
+    private FindResponse plan(FindRequest req, double bufferPercent) throws Exception {
+        // Call Google Routes API to get route polyline and total distance
+        Map<String, Object> routeData = stage(PlanMetrics.ROUTE_FETCH, () -> googleRoutesClient.callGoogleRoutesApi(req));
+        if (routeData == null) {
+            throw new RuntimeException("No route returned from Google Routes API");
+        }
+
+        PlanState state = stage(PlanMetrics.TRAVERSAL, () -> startPlan(req, routeData, bufferPercent));
+        if (!state.done && graphRoutePlanner.isEnabled() && graphRoutePlanner.plan(state)) {
+            return finish(state);
+        }
+        planLegs(state);
+        return finish(state);
+    }
+
+    /**
+     * Greedy planning: find a charging station for each leg and re-route from it until the
+     * destination is reached.
+     */
+    private void planLegs(PlanState state) throws Exception {
+        while (!state.done) {
+            FindResponse.Stop chargingStation = stage(PlanMetrics.STATION_SEARCH, () -> findStationForLeg(state));
+            FindRequest newRequest = applyStation(state, chargingStation);
+            if (state.done) {
+                break;
+            }
+
+            // Start on the next leg's stations while its route is fetched
+            if (speculativePrefetch.isEnabled()) {
+                speculativePrefetch.start(state, chargingStation);
+            }
+
+            // Reuse the rest of the current polyline when the station is close to it,
+            // otherwise get new route from station to destination (with remaining intermediates)
+            Map<String, Object> newRouteData = stage(PlanMetrics.REROUTE, () -> {
+                Map<String, Object> spliced = routeSplicer.isEnabled() ? routeSplicer.splice(state, chargingStation) : null;
+                return spliced != null ? spliced : googleRoutesClient.callGoogleRoutesApi(newRequest);
+            });
+            stage(PlanMetrics.TRAVERSAL, () -> continueWithLegRoute(state, newRouteData));
+        }
+    }
+
+    /**
+     * Keep the finished plan for re-plans and return its response, carrying the planId.
+     */
+    private FindResponse finish(PlanState state) {
+        state.response.setPlanId(planHandles.register(state));
+        return state.response;
+    }
+
+    private <T, E extends Throwable> T stage(String name, Observation.CheckedCallable<T, E> work) throws E {
+        return Observation.createNotStarted(name, observationRegistry).observeChecked(work);
+    }
+
+    private void stage(String name, Runnable work) {
+        Observation.createNotStarted(name, observationRegistry).observe(work);
+    }
+
+    private <T> Mono<T> stageReactive(String name, Mono<T> work) {
+        return Observations.observe(observationRegistry, name, KeyValues.empty(), work);
+    }
+
+    /**
+     * Non-blocking variant of {@link #findChargingPlan}. Runs the same planning steps, but
+     * every Google and ChargePoint call goes through WebClient, so no thread waits on I/O.
+     */
+    public Mono<FindResponse> findChargingPlanReactive(FindRequest req) {
+        return Observations.observe(observationRegistry, PlanMetrics.PLAN, KeyValues.of("api", "reactive"),
+                planSingleFlight.executeReactive(planKey(req), () -> planReactive(req)));
+    }
+
+    /**
+     * Streamed variant of {@link #findChargingPlanReactive}: the route summary, then each stop and
+     * route point as soon as the planner has it, then a final summary. The first stop is sent
+     * after one routing call and one station search, before the plan re-routes from it.
+     * Streams are not coalesced with identical plans in flight; their upstream calls still are.
+     */
+    public Flux<PlanEvent> streamChargingPlan(FindRequest req) {
+        return Flux.defer(() -> {
+            PlanStream stream = new PlanStream();
+            Mono<PlanEvent> plan = Observations.observe(observationRegistry, PlanMetrics.PLAN, KeyValues.of("api", "stream"),
+                            planReactive(req, stream))
+                    .doOnNext(stream::complete)
+                    .then(Mono.empty());
+            return Flux.merge(stream.events(), plan);
+        });
+    }
+
+    private Mono<FindResponse> planReactive(FindRequest req) {
+        return planReactive(req, response -> { });
+    }
+
+    private Mono<FindResponse> planReactive(FindRequest req, Consumer<FindResponse> progress) {
+        return stageReactive(PlanMetrics.ROUTE_FETCH, googleRoutesClient.callGoogleRoutesApiReactive(req))
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("No route returned from Google Routes API")))
+                .flatMap(routeData -> stageReactive(PlanMetrics.TRAVERSAL, Mono.fromCallable(() -> startPlan(req, routeData, bufferPercent))))
+                .doOnNext(state -> {
+                    state.progress = progress;
+                    progress.accept(state.response);
+                })
+                .flatMap(state -> (!state.done && graphRoutePlanner.isEnabled()
+                        ? graphRoutePlanner.planReactive(state)
+                                .flatMap(planned -> continuePlanReactive(state))
+                        : continuePlanReactive(state))
+                        .map(response -> finish(state)));
+    }
+
+    private Mono<FindResponse> continuePlanReactive(PlanState state) {
+        state.progress.accept(state.response);
+        if (state.done) {
+            return Mono.just(state.response);
+        }
+        return stageReactive(PlanMetrics.STATION_SEARCH, findStationForLegReactive(state))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(chargingStation -> {
+                    FindRequest newRequest = applyStation(state, chargingStation.orElse(null));
+                    if (state.done) {
+                        return Mono.just(state.response);
+                    }
+                    // The stop is final; report it before re-routing from it
+                    state.progress.accept(state.response);
+                    Mono<Map<String, Object>> legRoute = googleRoutesClient.callGoogleRoutesApiReactive(newRequest);
+                    if (routeSplicer.isEnabled()) {
+                        legRoute = routeSplicer.spliceReactive(state, chargingStation.get()).switchIfEmpty(legRoute);
+                    }
+                    Mono<Void> prefetch = speculativePrefetch.isEnabled()
+                            ? speculativePrefetch.startReactive(state, chargingStation.get()) : Mono.empty();
+                    return prefetch.then(stageReactive(PlanMetrics.REROUTE, legRoute))
+                            .map(Optional::of)
+                            .defaultIfEmpty(Optional.empty())
+                            .flatMap(newRouteData -> stageReactive(PlanMetrics.TRAVERSAL,
+                                    Mono.fromRunnable(() -> continueWithLegRoute(state, newRouteData.orElse(null)))))
+                            .then(Mono.defer(() -> continuePlanReactive(state)));
+                });
+    }
+
+    /**
+     * Exact identity of a plan request: every coordinate plus the starting range and SOC.
+     */
+    private static String planKey(FindRequest req) {
+        StringBuilder key = new StringBuilder(96);
+        key.append(req.getOrigin().latitude).append(',').append(req.getOrigin().longitude).append('>');
+        if (req.getIntermediates() != null) {
+            for (FindRequest.LatLng intermediate : req.getIntermediates()) {
+                key.append(intermediate.latitude).append(',').append(intermediate.longitude).append('>');
+            }
+        }
+        key.append(req.getDestination().latitude).append(',').append(req.getDestination().longitude)
+                .append('|').append(req.getCurrentRangeMiles()).append('|').append(req.getSoc());
+        return key.toString();
+    }
+
+    /**
+     * Set up the plan for the first route. Completes the response directly when the
+     * destination is reachable without charging, otherwise prepares the first station search.
+     */
+    private PlanState startPlan(FindRequest req, Map<String, Object> routeData, double bufferPercent) {
         double currentRange = req.getCurrentRangeMiles();
         double currentSoc = req.getSoc(); // SOC as percentage (0-100)
 
@@ -40,15 +279,9 @@ public class RouteService {
         // If current range is 450 miles, effective usable range is 315 miles (70% of 450)
         double effectiveRange = currentRange * (1 - bufferPercent);
 
-        // Call Google Routes API to get route polyline and total distance
-        Map<String, Object> routeData = callGoogleRoutesApi(req);
-        if (routeData == null) {
-            throw new RuntimeException("No route returned from Google Routes API");
-        }
-
         double totalMeters = ((Number) routeData.getOrDefault("distanceMeters", 0)).doubleValue();
         double totalMiles = totalMeters / 1609.344;
-        List<double[]> polyline = (List<double[]>) routeData.get("polyline");
+        RouteGeometry geometry = (RouteGeometry) routeData.get("geometry");
         String encodedPolyline = (String) routeData.get("encodedPolyline");
 
         FindResponse response = new FindResponse(false, totalMiles, 0.0, new ArrayList<>());
@@ -59,6 +292,13 @@ public class RouteService {
                 req.getOrigin().latitude, req.getOrigin().longitude, "origin"
         ));
 
+        // Track remaining intermediate stops (initially all of them)
+        List<FindRequest.LatLng> remainingIntermediates = req.getIntermediates() != null ?
+                new ArrayList<>(req.getIntermediates()) : new ArrayList<>();
+        PlanState state = new PlanState(req, response, routeData, fullRange, bufferPercent, effectiveRange,
+                remainingIntermediates);
+        state.useRoute(routeData);
+
         // Check if destination is reachable without charging
         // Compare effective range (with buffer) against total distance for safety check
         if (effectiveRange >= totalMiles) {
@@ -72,29 +312,13 @@ public class RouteService {
             double finalSOC = calculateFinalSOC(currentSoc, currentRange, totalMiles, fullRange);
             response.setFinalSOCAtDestination(finalSOC);
 
-            // Add intermediate stops to route sequence if any
-            if (req.getIntermediates() != null) {
-                for (FindRequest.LatLng intermediate : req.getIntermediates()) {
-                    response.getRouteSequence().add(new FindResponse.RoutePoint(
-                            intermediate.latitude, intermediate.longitude, "intermediate"
-                    ));
-                }
-            }
-
-            // Add destination to route sequence
-            response.getRouteSequence().add(new FindResponse.RoutePoint(
-                    req.getDestination().latitude, req.getDestination().longitude, "destination"
-            ));
-
-            return response;
+            // Add intermediate stops and destination to route sequence
+            finishRoute(state, Collections.emptyList());
+            return state;
         }
 
-        // Need charging - recursively find charging stations and plan route
-        // Track remaining intermediate stops (initially all of them)
-        List<FindRequest.LatLng> remainingIntermediates = req.getIntermediates() != null ?
-                new ArrayList<>(req.getIntermediates()) : new ArrayList<>();
-
-        return findChargingStopsRecursively(req, polyline, effectiveRange, fullRange, response, remainingIntermediates);
+        planLeg(state, geometry);
+        return state;
     }
 
     /**
@@ -109,191 +333,153 @@ public class RouteService {
     }
 
     // Centralized method for search radius in kilometers based on polyline
-    private double getSearchRadiusKm(List<double[]> polyline) {
-        double maxDistance = 0.0;
-        for (int i = 1; i < polyline.size(); i++) {
-            double[] prev = polyline.get(i - 1);
-            double[] curr = polyline.get(i);
-            double distanceKm = haversineMiles(prev[0], prev[1], curr[0], curr[1]) * KM_PER_MILE;
-            if (distanceKm > maxDistance) {
-                maxDistance = distanceKm;
-            }
-        }
+    double getSearchRadiusKm(RouteGeometry geometry) {
+        double maxDistance = geometry.maxSegmentMiles() * KM_PER_MILE;
         return maxDistance < 14.0 ? 14.0 : maxDistance;
     }
 
-    private FindResponse findChargingStopsRecursively(FindRequest req, List<double[]> polyline,
-                                                      double currentEffectiveRange, double fullRange,
-                                                      FindResponse response, List<FindRequest.LatLng> remainingIntermediates) throws Exception {
-
+    /**
+     * Work out how far the current leg gets on the effective range. Either the leg completes
+     * the route, or the station search at the last reachable point is prepared.
+     */
+    private void planLeg(PlanState state, RouteGeometry geometry) {
         // Calculate search radius once at the beginning and reuse it
-        double searchRadiusKm = getSearchRadiusKm(polyline);
-
-        double accumulatedMiles = 0;
-        int lastReachableIndex = 0;
-        List<FindRequest.LatLng> reachedIntermediates = new ArrayList<>();
-
-        // Iterate through polyline points
-        for (int i = 1; i < polyline.size(); i++) {
-            double[] previousPoint = polyline.get(i - 1);
-            double[] currentPoint = polyline.get(i);
-            double segmentMiles = haversineMiles(previousPoint[0], previousPoint[1],
-                    currentPoint[0], currentPoint[1]);
-            accumulatedMiles += segmentMiles;
-
-            if (accumulatedMiles <= currentEffectiveRange) {
-                lastReachableIndex = i;
-
-                // Check if we've reached any intermediate stops at this point
-                List<FindRequest.LatLng> justReached = checkAndUpdateReachedIntermediates(currentPoint, remainingIntermediates);
-                reachedIntermediates.addAll(justReached);
-            } else {
-                // Add any intermediate stops we reached before needing to charge
-                for (FindRequest.LatLng reached : reachedIntermediates) {
-                    response.getRouteSequence().add(new FindResponse.RoutePoint(
-                            reached.latitude, reached.longitude, "intermediate"
-                    ));
-                }
+        double searchRadiusKm = getSearchRadiusKm(geometry);
+
+        // The range cutoff is a binary search over the cumulative distance index
+        int lastReachableIndex = geometry.lastIndexWithin(state.effectiveRange);
+        List<FindRequest.LatLng> reachedIntermediates = checkAndUpdateReachedIntermediates(
+                geometry, lastReachableIndex, state.remainingIntermediates);
+
+        if (lastReachableIndex >= geometry.size() - 1) {
+            // The route is complete without needing more charging
+            // This means we've traversed the entire polyline within our effective range
+            finishRoute(state, reachedIntermediates);
+            return;
+        }
 
-                // Cannot reach current point, search for charging station at last reachable point
-                double[] searchPoint = polyline.get(lastReachableIndex);
+        // Add any intermediate stops we reached before needing to charge
+        for (FindRequest.LatLng reached : reachedIntermediates) {
+            state.response.getRouteSequence().add(new FindResponse.RoutePoint(
+                    reached.latitude, reached.longitude, "intermediate"
+            ));
+        }
 
-                // Calculate battery percentage when reaching this charging station
-                double distanceToStation = 0;
-                for (int k = 1; k <= lastReachableIndex; k++) {
-                    double[] prev = polyline.get(k - 1);
-                    double[] curr = polyline.get(k);
-                    distanceToStation += haversineMiles(prev[0], prev[1], curr[0], curr[1]);
-                }
+        // Cannot reach next point, search for charging station at last reachable point
+        state.legGeometry = geometry;
+        state.lastReachableIndex = lastReachableIndex;
+        state.corridorCandidates = null;
+        state.searchPoint = geometry.point(lastReachableIndex);
+        state.searchRadiusKm = searchRadiusKm;
+
+        // If nothing is found there, try previous polyline points with distance-based search to avoid gaps
+        // Instead of skipping fixed number of points, skip based on distance to ensure coverage
+        double maxGapKm = searchRadiusKm * 0.8; // Allow 80% overlap (8km gaps max)
+        state.fallbackCandidates = fallbackSearchPoints(state, geometry, lastReachableIndex, maxGapKm);
+
+        // Calculate battery percentage when reaching this charging station
+        double distanceToStation = geometry.distanceToMiles(lastReachableIndex);
+
+        // Calculate remaining range and battery percentage at station
+        double remainingRangeAtStation = state.legRequest.getCurrentRangeMiles() - distanceToStation;
+        state.batteryPercentageOnArrival = (remainingRangeAtStation / state.fullRange) * 100.0;
+        // Apply buffer consideration - if we're using effective range, the actual battery % will be higher
+    }
 
-                // Calculate remaining range and battery percentage at station
-                double remainingRangeAtStation = req.getCurrentRangeMiles() - distanceToStation;
-                double batteryPercentageOnArrival = (remainingRangeAtStation / fullRange) * 100.0;
-                // Apply buffer consideration - if we're using effective range, the actual battery % will be higher
-
-                FindResponse.Stop chargingStation = searchForChargingStation(searchPoint[0], searchPoint[1], searchRadiusKm);
-
-                if (chargingStation == null) {
-                    // No station found, try previous polyline points with distance-based search to avoid gaps
-                    // Instead of skipping fixed number of points, skip based on distance to ensure coverage
-                    System.out.println(searchRadiusKm +"from 1 polyline");// Centralized value
-                    double maxGapKm = searchRadiusKm * 0.8; // Allow 80% overlap (8km gaps max)
-
-                    double accumulatedDistance = 0;
-                    int searchAttempts = 0;
-                    int maxSearchAttempts = 50; // Limit to 4 search attempts
-
-                    for (int j = lastReachableIndex - 1; j >= 0 && searchAttempts < maxSearchAttempts; j--) {
-                        double[] currentSearchPoint = polyline.get(j);
-                        double[] previousSearchPoint = polyline.get(j + 1);
-
-                        // Calculate distance from previous search point
-                        double segmentDistanceKm = haversineMiles(currentSearchPoint[0], currentSearchPoint[1],
-                                previousSearchPoint[0], previousSearchPoint[1]) * KM_PER_MILE;
-                        accumulatedDistance += segmentDistanceKm;
-
-                        // Only search if we've moved far enough to avoid too much overlap
-                        if (accumulatedDistance >= maxGapKm) {
-                            searchAttempts++; // Increment search attempts counter
-                            System.out.println("Search attempt " + searchAttempts + " of " + maxSearchAttempts);
-                            chargingStation = searchForChargingStation(currentSearchPoint[0], currentSearchPoint[1], searchRadiusKm);
-                            if (chargingStation != null) {
-                                break;
-                            }
-                        }
-                    }
+    /**
+     * Record the charging station found for the current leg and return the request for the
+     * route from it to the destination. Completes the response as unreachable if none was found.
+     */
+    private FindRequest applyStation(PlanState state, FindResponse.Stop chargingStation) {
+        FindRequest req = state.legRequest;
+        FindResponse response = state.response;
+
+        if (chargingStation == null) {
+            response.setReachableWithoutCharging(false);
+            response.setRemainingRangeAfterRoute(0);
+            // Add final destination even if unreachable for route visualization
+            response.getRouteSequence().add(new FindResponse.RoutePoint(
+                    req.getDestination().latitude, req.getDestination().longitude, "destination"
+            ));
+            state.done = true;
+            return null;
+        }
 
-                    if (chargingStation == null) {
-                        System.out.println("No charging station found after " + searchAttempts + " search attempts");
-                    }
-                }
+        // Set battery percentage information for this charging station
+        chargingStation.setBatteryPercentageOnArrival(Math.max(0.0, state.batteryPercentageOnArrival)); // Ensure not negative
+        chargingStation.setBatteryPercentageAfterCharging(90.0); // Always charge to 90%
 
-                if (chargingStation == null) {
-                    response.setReachableWithoutCharging(false);
-                    response.setRemainingRangeAfterRoute(0);
-                    // Add final destination even if unreachable for route visualization
-                    response.getRouteSequence().add(new FindResponse.RoutePoint(
-                            req.getDestination().latitude, req.getDestination().longitude, "destination"
-                    ));
-                    return response;
-                }
+        state.addStop(chargingStation);
 
-                // Set battery percentage information for this charging station
-                chargingStation.setBatteryPercentageOnArrival(Math.max(0.0, batteryPercentageOnArrival)); // Ensure not negative
-                chargingStation.setBatteryPercentageAfterCharging(90.0); // Always charge to 90%
+        // Add charging station to route sequence
+        response.getRouteSequence().add(new FindResponse.RoutePoint(
+                chargingStation.getLat(), chargingStation.getLon(), "charging_station"
+        ));
 
-                response.getStops().add(chargingStation);
+        // Calculate new route from charging station to destination
+        FindRequest newRequest = new FindRequest();
+        FindRequest.LatLng stationLocation = new FindRequest.LatLng();
+        stationLocation.latitude = chargingStation.getLat();
+        stationLocation.longitude = chargingStation.getLon();
+        newRequest.setOrigin(stationLocation);
+        newRequest.setDestination(req.getDestination());
+
+        // Only include remaining intermediate stops that haven't been reached yet
+        if (!state.remainingIntermediates.isEmpty()) {
+            newRequest.setIntermediates(new ArrayList<>(state.remainingIntermediates));
+        }
 
-                // Add charging station to route sequence
-                response.getRouteSequence().add(new FindResponse.RoutePoint(
-                        chargingStation.getLat(), chargingStation.getLon(), "charging_station"
-                ));
+        // After charging, EV manufacturers recommend charging only up to 90% for battery health
+        // So range after charging = fullRange * 0.90, then apply 30% buffer for safety
+        double newRange = state.fullRange * 0.90; // Charge to 90% of full capacity
+        newRequest.setCurrentRangeMiles(newRange);
+        // Set SOC to 90% (recommended max charge level)
+        newRequest.setSoc(90.0);
 
-                // Calculate new route from charging station to destination
-                FindRequest newRequest = new FindRequest();
-                FindRequest.LatLng stationLocation = new FindRequest.LatLng();
-                stationLocation.latitude = chargingStation.getLat();
-                stationLocation.longitude = chargingStation.getLon();
-                newRequest.setOrigin(stationLocation);
-                newRequest.setDestination(req.getDestination());
+        state.legRequest = newRequest;
+        state.effectiveRange = newRange * (1 - state.bufferPercent); // Apply 30% buffer
+        return newRequest;
+    }
 
-                // Only include remaining intermediate stops that haven't been reached yet
-                if (!remainingIntermediates.isEmpty()) {
-                    newRequest.setIntermediates(new ArrayList<>(remainingIntermediates));
-                }
+    /**
+     * Continue the plan with the route from the last charging station to the destination.
+     */
+    private void continueWithLegRoute(PlanState state, Map<String, Object> newRouteData) {
+        if (newRouteData == null) {
+            throw new RuntimeException("No route from charging station to destination");
+        }
+        state.useRoute(newRouteData);
 
-                // After charging, EV manufacturers recommend charging only up to 90% for battery health
-                // So range after charging = fullRange * 0.90, then apply 30% buffer for safety
-                double newRange = fullRange * 0.90; // Charge to 90% of full capacity
-                double newEffectiveRange = newRange * (1 - bufferPercent); // Apply 30% buffer
-                newRequest.setCurrentRangeMiles(newRange);
-                // Set SOC to 90% (recommended max charge level)
-                newRequest.setSoc(90.0);
-
-                // Get new route from station to destination (with remaining intermediates)
-                Map<String, Object> newRouteData = callGoogleRoutesApi(newRequest);
-                if (newRouteData == null) {
-                    throw new RuntimeException("No route from charging station to destination");
-                }
+        double newRange = state.legRequest.getCurrentRangeMiles();
+        double remainingMeters = ((Number) newRouteData.getOrDefault("distanceMeters", 0)).doubleValue();
+        double remainingMiles = remainingMeters / 1609.344;
+        RouteGeometry newGeometry = (RouteGeometry) newRouteData.get("geometry");
 
-                double remainingMeters = ((Number) newRouteData.getOrDefault("distanceMeters", 0)).doubleValue();
-                double remainingMiles = remainingMeters / 1609.344;
-                List<double[]> newPolyline = (List<double[]>) newRouteData.get("polyline");
-
-                if (newEffectiveRange >= remainingMiles) {
-                    // Can reach destination from this charging station
-                    response.setReachableWithoutCharging(true);
-                    // Use actual newRange (not newEffectiveRange) for consistent calculation
-                    response.setRemainingRangeAfterRoute(newRange - remainingMiles);
-
-                    // Calculate final SOC at destination
-                    double finalSOC = calculateFinalSOC(90.0, newRange, remainingMiles, fullRange);
-                    response.setFinalSOCAtDestination(finalSOC);
-
-                    // Add any remaining intermediate stops to route sequence
-                    if (remainingIntermediates != null) {
-                        for (FindRequest.LatLng intermediate : remainingIntermediates) {
-                            response.getRouteSequence().add(new FindResponse.RoutePoint(
-                                    intermediate.latitude, intermediate.longitude, "intermediate"
-                            ));
-                        }
-                    }
+        if (state.effectiveRange >= remainingMiles) {
+            // Can reach destination from this charging station
+            FindResponse response = state.response;
+            response.setReachableWithoutCharging(true);
+            // Use actual newRange (not newEffectiveRange) for consistent calculation
+            response.setRemainingRangeAfterRoute(newRange - remainingMiles);
 
-                    // Add destination to route sequence
-                    response.getRouteSequence().add(new FindResponse.RoutePoint(
-                            req.getDestination().latitude, req.getDestination().longitude, "destination"
-                    ));
+            // Calculate final SOC at destination
+            double finalSOC = calculateFinalSOC(90.0, newRange, remainingMiles, state.fullRange);
+            response.setFinalSOCAtDestination(finalSOC);
 
-                    return response;
-                } else {
-                    // Need more charging stations, continue recursively with remaining intermediates
-                    return findChargingStopsRecursively(newRequest, newPolyline, newEffectiveRange, fullRange, response, remainingIntermediates);
-                }
-            }
+            // Add any remaining intermediate stops and destination to route sequence
+            finishRoute(state, Collections.emptyList());
+        } else {
+            // Need more charging stations, continue with remaining intermediates
+            planLeg(state, newGeometry);
         }
+    }
+
+    /**
+     * Add the reached and remaining intermediate stops and the destination to the route sequence.
+     */
+    private void finishRoute(PlanState state, List<FindRequest.LatLng> reachedIntermediates) {
+        FindResponse response = state.response;
 
-        // If we reach here, the route is complete without needing more charging
-        // This means we've traversed the entire polyline within our effective range
         // Add any remaining intermediate stops that were reached
         for (FindRequest.LatLng reached : reachedIntermediates) {
             response.getRouteSequence().add(new FindResponse.RoutePoint(
@@ -302,262 +488,187 @@ public class RouteService {
         }
 
         // Add remaining intermediate stops if any
-        if (remainingIntermediates != null) {
-            for (FindRequest.LatLng intermediate : remainingIntermediates) {
-                response.getRouteSequence().add(new FindResponse.RoutePoint(
-                        intermediate.latitude, intermediate.longitude, "intermediate"
-                ));
-            }
+        for (FindRequest.LatLng intermediate : state.remainingIntermediates) {
+            response.getRouteSequence().add(new FindResponse.RoutePoint(
+                    intermediate.latitude, intermediate.longitude, "intermediate"
+            ));
         }
 
         // Add destination to route sequence
+        FindRequest.LatLng destination = state.legRequest.getDestination();
         response.getRouteSequence().add(new FindResponse.RoutePoint(
-                req.getDestination().latitude, req.getDestination().longitude, "destination"
+                destination.latitude, destination.longitude, "destination"
         ));
 
         response.setReachableWithoutCharging(true);
-        return response;
+        state.done = true;
+    }
+
+    private FindResponse.Stop findStationForLeg(PlanState state) throws InterruptedException {
+        if (corridorStationSearch.isEnabled()) {
+            // One envelope query per corridor section replaces the point-by-point scan
+            return corridorStationSearch.findStation(state);
+        }
+        speculativePrefetch.confirm(state);
+        double[] searchPoint = state.searchPoint;
+        FindResponse.Stop chargingStation = chargePointClient.searchForChargingStation(
+                searchPoint[0], searchPoint[1], state.searchRadiusKm);
+
+        if (chargingStation == null) {
+            log.debug("No station at the last reachable point, searching {} fallback points within {} km",
+                    state.fallbackCandidates.size(), state.searchRadiusKm);
+            chargingStation = searchCandidatesInOrder(state.fallbackCandidates, state.searchRadiusKm);
+            if (chargingStation == null) {
+                log.debug("No charging station found after {} search attempts", state.fallbackCandidates.size());
+            }
+        } else {
+            planMetrics.recordStationSearch(1, true);
+        }
+        return chargingStation;
     }
 
     /**
-     * Check if the current point is close to any remaining intermediate stops
-     * and remove them from the remaining list if reached
+     * Non-blocking variant of {@link #findStationForLeg}. flatMapSequential keeps candidate
+     * order, so the first station emitted is the one the sequential scan would pick, and
+     * next() cancels the searches still in flight.
      */
-    private List<FindRequest.LatLng> checkAndUpdateReachedIntermediates(double[] currentPoint, List<FindRequest.LatLng> remainingIntermediates) {
-        double reachThresholdMiles = 1.0; // Consider intermediate reached if within 1 mile
-
-        List<FindRequest.LatLng> justReached = new ArrayList<>();
-        Iterator<FindRequest.LatLng> iterator = remainingIntermediates.iterator();
-        while (iterator.hasNext()) {
-            FindRequest.LatLng intermediate = iterator.next();
-            double distance = haversineMiles(currentPoint[0], currentPoint[1],
-                    intermediate.latitude, intermediate.longitude);
+    private Mono<FindResponse.Stop> findStationForLegReactive(PlanState state) {
+        if (corridorStationSearch.isEnabled()) {
+            return corridorStationSearch.findStationReactive(state);
+        }
+        speculativePrefetch.confirm(state);
+        double[] searchPoint = state.searchPoint;
+        double searchRadiusKm = state.searchRadiusKm;
+        List<double[]> candidates = state.fallbackCandidates;
+        return chargePointClient.searchForChargingStationReactive(searchPoint[0], searchPoint[1], searchRadiusKm)
+                .doOnNext(station -> planMetrics.recordStationSearch(1, true))
+                .switchIfEmpty(Mono.defer(() -> Flux.fromIterable(candidates)
+                        .flatMapSequential(point -> chargePointClient
+                                .searchForChargingStationReactive(point[0], point[1], searchRadiusKm)
+                                .map(Optional::of)
+                                .defaultIfEmpty(Optional.empty()), Math.max(1, fallbackParallelism))
+                        .index()
+                        .filter(found -> found.getT2().isPresent())
+                        .next()
+                        // The search point itself plus every fallback candidate up to the hit
+                        .doOnNext(found -> planMetrics.recordStationSearch(found.getT1().intValue() + 2, true))
+                        .map(found -> found.getT2().get())
+                        .switchIfEmpty(Mono.fromRunnable(() -> planMetrics.recordStationSearch(1 + candidates.size(), false)))));
+    }
 
-            if (distance <= reachThresholdMiles) {
-                justReached.add(intermediate);
-                iterator.remove(); // Remove this intermediate as we've reached it
-                System.out.println("Reached intermediate stop at: " + intermediate.latitude + ", " + intermediate.longitude);
+    /**
+     * Walk the polyline backwards from lastReachableIndex and collect the points the
+     * fallback search should query, in the order the sequential scan would try them.
+     * The vertex of the earliest one is kept as the state's searchFromIndex.
+     */
+    private List<double[]> fallbackSearchPoints(PlanState state, RouteGeometry geometry, int lastReachableIndex, double maxGapKm) {
+        List<double[]> candidates = new ArrayList<>();
+        state.searchFromIndex = lastReachableIndex;
+        double startMiles = geometry.distanceToMiles(lastReachableIndex);
+
+        for (int j = lastReachableIndex - 1; j >= 0 && candidates.size() < MAX_FALLBACK_SEARCH_ATTEMPTS; j--) {
+            // Distance walked back from the last reachable point
+            double accumulatedDistanceKm = (startMiles - geometry.distanceToMiles(j)) * KM_PER_MILE;
+
+            // Only search if we've moved far enough to avoid too much overlap
+            if (accumulatedDistanceKm >= maxGapKm) {
+                candidates.add(geometry.point(j));
+                state.searchFromIndex = j;
             }
         }
-
-        return justReached;
+        return candidates;
     }
 
-    private Map<String, Object> callGoogleRoutesApi(FindRequest req) {
-        String url = "https://routes.googleapis.com/directions/v2:computeRoutes";
-
-        // Create request payload matching the exact structure from your curl example
-        Map<String, Object> payload = new HashMap<>();
-
-        Map<String, Object> origin = Map.of(
-                "location", Map.of(
-                        "latLng", Map.of(
-                                "latitude", req.getOrigin().latitude,
-                                "longitude", req.getOrigin().longitude
-                        )
-                )
-        );
-
-        Map<String, Object> destination = Map.of(
-                "location", Map.of(
-                        "latLng", Map.of(
-                                "latitude", req.getDestination().latitude,
-                                "longitude", req.getDestination().longitude
-                        )
-                )
-        );
-
-        payload.put("origin", origin);
-        payload.put("destination", destination);
-
-        // Add intermediates if provided
-        if (req.getIntermediates() != null && !req.getIntermediates().isEmpty()) {
-            List<Map<String, Object>> intermediates = new ArrayList<>();
-            for (FindRequest.LatLng intermediate : req.getIntermediates()) {
-                Map<String, Object> intermediateLocation = Map.of(
-                        "location", Map.of(
-                                "latLng", Map.of(
-                                        "latitude", intermediate.latitude,
-                                        "longitude", intermediate.longitude
-                                )
-                        )
-                );
-                intermediates.add(intermediateLocation);
+    /**
+     * Query the candidate points concurrently and return the station found for the earliest
+     * candidate, i.e. the one closest to lastReachableIndex. This picks the same stop as trying
+     * the candidates one by one, but takes roughly one round trip per fallbackParallelism
+     * candidates. At most fallbackParallelism of them are in flight at once: the next one is
+     * submitted as soon as the earliest outstanding one comes back empty.
+     */
+    private FindResponse.Stop searchCandidatesInOrder(List<double[]> candidates, double searchRadiusKm) throws InterruptedException {
+        if (fallbackParallelism <= 1) {
+            for (int k = 0; k < candidates.size(); k++) {
+                double[] point = candidates.get(k);
+                log.debug("Search attempt {} of {}", k + 1, candidates.size());
+                FindResponse.Stop station = chargePointClient.searchForChargingStation(point[0], point[1], searchRadiusKm);
+                if (station != null) {
+                    planMetrics.recordStationSearch(k + 2, true);
+                    return station;
+                }
             }
-            payload.put("intermediates", intermediates);
+            planMetrics.recordStationSearch(1 + candidates.size(), false);
+            return null;
         }
 
-        payload.put("travelMode", "DRIVE");
-        payload.put("routingPreference", "TRAFFIC_AWARE_OPTIMAL");
-//        payload.put("polylineQuality", "HIGH_QUALITY");
-
-        // Set headers exactly as specified in your curl example
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("X-Goog-Api-Key", googleApiKey);
-        headers.set("X-Goog-FieldMask", "routes.distanceMeters,routes.polyline.encodedPolyline");
-
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers);
+        // Searches on the pool still count towards this plan's observation
+        Observation parent = observationRegistry.getCurrentObservation();
+        List<Future<FindResponse.Stop>> futures = new ArrayList<>(candidates.size());
 
         try {
-            ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class);
-            if (!response.getStatusCode().is2xxSuccessful()) {
-                System.err.println("Google Routes API error: " + response.getStatusCode());
-                return null;
-            }
-
-            // Parse JSON response
-            com.fasterxml.jackson.databind.ObjectMapper objectMapper = new com.fasterxml.jackson.databind.ObjectMapper();
-            com.fasterxml.jackson.databind.JsonNode root = objectMapper.readTree(response.getBody());
-
-            com.fasterxml.jackson.databind.JsonNode routeNode = root.path("routes").get(0);
-            if (routeNode == null) return null;
-
-            double distanceMeters = routeNode.path("distanceMeters").asDouble(0);
-            String encodedPolyline = routeNode.path("polyline").path("encodedPolyline").asText();
-
-            List<double[]> polyline = new ArrayList<>();
-            if (encodedPolyline != null && !encodedPolyline.isEmpty()) {
-                polyline = Polyline.decode(encodedPolyline);
+            // Wait in candidate order: a later hit only wins once every earlier candidate came back empty
+            for (int k = 0; k < candidates.size(); k++) {
+                // Slide the window: this plan never has more than fallbackParallelism searches on the shared pool
+                while (futures.size() < candidates.size() && futures.size() < k + fallbackParallelism) {
+                    double[] point = candidates.get(futures.size());
+                    futures.add(stationSearchExecutor.submit(() -> Observation.tryScoped(parent,
+                            () -> chargePointClient.searchForChargingStation(point[0], point[1], searchRadiusKm))));
+                }
+                FindResponse.Stop station;
+                try {
+                    station = futures.get(k).get();
+                } catch (ExecutionException e) {
+                    log.warn("Fallback station search failed: {}", e.getCause().toString());
+                    station = null;
+                }
+                if (station != null) {
+                    log.debug("Station found on search attempt {} of {}", k + 1, candidates.size());
+                    // The search point itself plus every fallback candidate up to the hit
+                    planMetrics.recordStationSearch(k + 2, true);
+                    return station;
+                }
             }
-
-            Map<String, Object> result = new HashMap<>();
-            result.put("distanceMeters", distanceMeters);
-            result.put("polyline", polyline);
-            System.out.println("polyline " + polyline);
-            result.put("encodedPolyline", encodedPolyline); // Add encoded polyline to result
-
-            return result;
-
-        } catch (Exception ex) {
-            System.err.println("Error calling Google Routes API: " + ex.getMessage());
-            ex.printStackTrace();
+            planMetrics.recordStationSearch(1 + candidates.size(), false);
             return null;
+        } finally {
+            // Drop searches still queued once the answer is known; running ones finish, as their
+            // calls may be shared with other plans and their tiles cached
+            for (Future<FindResponse.Stop> future : futures) {
+                future.cancel(false);
+            }
         }
     }
 
-    private FindResponse.Stop searchForChargingStation(double lat, double lon, double searchRadiusKm) {
-        double halfKm = searchRadiusKm / 2.0; // Use pre-calculated value
-        System.out.println(halfKm + " from pre-calculated search radius");
-        // Approximate conversion factors
-        double kmPerDegLat = 110.574; // ~ km per degree latitude
-        double kmPerDegLon = 111.320 * Math.cos(Math.toRadians(lat)); // ~ km per degree longitude at this latitude
-
-        // Convert km to degrees
-        double dLat = halfKm / kmPerDegLat;
-        double dLon = halfKm / kmPerDegLon;
-
-        // Bounding box corners
-        double neLat = lat + dLat;
-        double neLon = lon + dLon;
-        double swLat = lat - dLat;
-        double swLon = lon - dLon;
-
-        // Create payload matching your curl example structure
-        Map<String, Object> stationList = new HashMap<>();
-        stationList.put("screen_width", 417.5);
-        stationList.put("screen_height", 548);
-        stationList.put("ne_lat", neLat);
-        stationList.put("ne_lon", neLon);
-        stationList.put("sw_lat", swLat);
-        stationList.put("sw_lon", swLon);
-        stationList.put("page_size", 10);
-        stationList.put("page_offset", "");
-        stationList.put("sort_by", "distance");
-        stationList.put("reference_lat", lat);
-        stationList.put("reference_lon", lon);
-        stationList.put("include_map_bound", true);
-
-        // Add filters for available DC fast charging stations
-        Map<String, Object> filter = new HashMap<>();
-        filter.put("status_available", true);
-        filter.put("dc_fast_charging", true);
-        stationList.put("filter", filter);
-        stationList.put("bound_output", true);
-
-        Map<String, Object> payload = Map.of("station_list", stationList);
-
-        // Set headers exactly as specified in your curl example
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("accept", "*/*");
-        headers.set("accept-language", "en-GB");
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers);
-
-        try {
-            ResponseEntity<String> response = restTemplate.postForEntity(chargepointApiUrl, entity, String.class);
-            System.out.println("pk" + response);
-            if (!response.getStatusCode().is2xxSuccessful()) {
-                System.err.println("ChargePoint API error: " + response.getStatusCode());
-                return null;
-            }
+    /**
+     * Find the remaining intermediate stops the route passes (within 1 mile) at or before
+     * lastReachableIndex, remove them from the remaining list and return them in the order reached
+     */
+    List<FindRequest.LatLng> checkAndUpdateReachedIntermediates(RouteGeometry geometry, int lastReachableIndex,
+                                                               List<FindRequest.LatLng> remainingIntermediates) {
+        double reachThresholdMiles = 1.0; // Consider intermediate reached if within 1 mile
 
-            com.fasterxml.jackson.databind.ObjectMapper objectMapper = new com.fasterxml.jackson.databind.ObjectMapper();
-            com.fasterxml.jackson.databind.JsonNode root = objectMapper.readTree(response.getBody());
-
-            com.fasterxml.jackson.databind.JsonNode stations = root.path("station_list").path("stations");
-            if (stations.isArray() && stations.size() > 0) {
-                // Return the first (closest) station for the charging route logic
-                // But we'll add all stations to a separate list for frontend display
-                com.fasterxml.jackson.databind.JsonNode firstStation = stations.get(0);
-
-                double stationLat = firstStation.path("lat").asDouble(firstStation.path("latitude").asDouble());
-                double stationLon = firstStation.path("lon").asDouble(firstStation.path("longitude").asDouble());
-                String stationName = firstStation.path("name").asText(
-                        firstStation.path("station_name").asText(
-                                firstStation.path("name1").asText("ChargePoint Station")
-                        )
-                );
-                Integer deviceId = firstStation.path("device_id").asInt(0);
-
-                FindResponse.Stop stop = new FindResponse.Stop();
-                stop.setLat(stationLat);
-                stop.setLon(stationLon);
-                stop.setStationName(stationName);
-                stop.setDistanceFromRoutePointMiles(haversineMiles(lat, lon, stationLat, stationLon));
-                stop.setDeviceId(deviceId);
-
-                // Store the complete raw station data for the primary station
-                try {
-                    Object rawFirstStation = objectMapper.treeToValue(firstStation, Object.class);
-                    stop.setRawStationData(rawFirstStation);
-                } catch (Exception e) {
-                    System.err.println("Error converting first station to raw data: " + e.getMessage());
-                }
+        List<FindRequest.LatLng> justReached = new ArrayList<>();
+        if (remainingIntermediates.isEmpty()) {
+            return justReached;
+        }
 
-                // Store all raw stations for this search location
-                List<Object> allRawStations = new ArrayList<>();
-                for (com.fasterxml.jackson.databind.JsonNode station : stations) {
-                    try {
-                        Object rawStation = objectMapper.treeToValue(station, Object.class);
-                        allRawStations.add(rawStation);
-                    } catch (Exception e) {
-                        System.err.println("Error converting station to raw data: " + e.getMessage());
-                    }
-                }
+        int[] projected = geometry.projectIntermediates(remainingIntermediates, reachThresholdMiles);
+        Integer[] order = new Integer[projected.length];
+        for (int k = 0; k < order.length; k++) {
+            order[k] = k;
+        }
+        // Stable sort keeps list order for intermediates reached at the same vertex
+        Arrays.sort(order, Comparator.comparingInt(k -> projected[k]));
 
-                // Add all raw stations to the main stop for reference
-                stop.setAllRawStations(allRawStations);
-                return stop;
+        for (int k : order) {
+            if (projected[k] >= 1 && projected[k] <= lastReachableIndex) {
+                FindRequest.LatLng intermediate = remainingIntermediates.get(k);
+                justReached.add(intermediate);
+                log.debug("Reached intermediate stop at: {}, {}", intermediate.latitude, intermediate.longitude);
             }
-
-            return null;
-
-        } catch (Exception ex) {
-            System.err.println("Error calling ChargePoint API: " + ex.getMessage());
-            ex.printStackTrace();
-            return null;
         }
-    }
+        remainingIntermediates.removeAll(justReached);
 
-    private double haversineMiles(double lat1, double lon1, double lat2, double lon2) {
-        double R = 3958.8; // Earth radius in miles
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                Math.sin(dLon / 2) * Math.sin(dLon / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
+        return justReached;
     }
 }
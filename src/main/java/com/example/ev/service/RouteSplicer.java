@@ -0,0 +1,112 @@
+package com.example.ev.service;
+
+import com.example.ev.model.FindRequest;
+import com.example.ev.model.FindResponse;
+import com.example.ev.util.RouteGeometry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Continues a trip after a charging stop on the polyline we already have instead of
+ * routing station-to-destination again. The station is snapped to its nearest vertex on
+ * the stretch of the current leg its search covered, and the rest of the leg is reused from there. Close stations join the
+ * route with an estimated straight-line detour; stations further out get a short routed
+ * detour to the vertex; stations beyond maxSnapMiles still need a full re-route.
+ */
+@Component
+@RequiredArgsConstructor
+public class RouteSplicer {
+
+    private static final double METERS_PER_MILE = 1609.344;
+
+    private final GoogleRoutesClient googleRoutesClient;
+
+    @Value("${ev.splice.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ev.splice.estimateWithinMiles:1.0}")
+    private double estimateWithinMiles;
+
+    @Value("${ev.splice.maxSnapMiles:5.0}")
+    private double maxSnapMiles;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Distance and geometry of the trip from the station on, as the routing client returns them,
+     * or null when the station is too far from the current leg to splice.
+     */
+    Map<String, Object> splice(PlanState state, FindResponse.Stop station) {
+        RouteGeometry geometry = state.legGeometry;
+        int vertex = state.nearestSearchedVertex(station.getLat(), station.getLon());
+        double snapMiles = geometry.milesTo(vertex, station.getLat(), station.getLon());
+        if (snapMiles <= estimateWithinMiles) {
+            return routeData(RouteGeometry.join(stationPoint(station), geometry.slice(vertex)));
+        }
+        if (snapMiles > maxSnapMiles) {
+            return null;
+        }
+        return withDetour(googleRoutesClient.callGoogleRoutesApi(detourRequest(station, geometry, vertex)), geometry, vertex);
+    }
+
+    /**
+     * Non-blocking variant of {@link #splice}. Completes empty when the station is too far to splice.
+     */
+    Mono<Map<String, Object>> spliceReactive(PlanState state, FindResponse.Stop station) {
+        RouteGeometry geometry = state.legGeometry;
+        int vertex = state.nearestSearchedVertex(station.getLat(), station.getLon());
+        double snapMiles = geometry.milesTo(vertex, station.getLat(), station.getLon());
+        if (snapMiles <= estimateWithinMiles) {
+            return Mono.just(routeData(RouteGeometry.join(stationPoint(station), geometry.slice(vertex))));
+        }
+        if (snapMiles > maxSnapMiles) {
+            return Mono.empty();
+        }
+        return googleRoutesClient.callGoogleRoutesApiReactive(detourRequest(station, geometry, vertex))
+                .mapNotNull(detour -> withDetour(detour, geometry, vertex));
+    }
+
+    private static Map<String, Object> withDetour(Map<String, Object> detour, RouteGeometry geometry, int vertex) {
+        RouteGeometry detourGeometry = detour == null ? null : (RouteGeometry) detour.get("geometry");
+        if (detourGeometry == null || detourGeometry.size() == 0) {
+            return null;
+        }
+        Map<String, Object> routeData = routeData(RouteGeometry.join(detourGeometry, geometry.slice(vertex)));
+        if (detour.containsKey("stale")) {
+            routeData.put("stale", detour.get("stale"));
+        }
+        return routeData;
+    }
+
+    private static RouteGeometry stationPoint(FindResponse.Stop station) {
+        return RouteGeometry.ofPacked(new double[]{station.getLat(), station.getLon()}, 1);
+    }
+
+    private static FindRequest detourRequest(FindResponse.Stop station, RouteGeometry geometry, int vertex) {
+        FindRequest.LatLng origin = new FindRequest.LatLng();
+        origin.latitude = station.getLat();
+        origin.longitude = station.getLon();
+        FindRequest.LatLng destination = new FindRequest.LatLng();
+        destination.latitude = geometry.lat(vertex);
+        destination.longitude = geometry.lon(vertex);
+
+        FindRequest request = new FindRequest();
+        request.setOrigin(origin);
+        request.setDestination(destination);
+        return request;
+    }
+
+    private static Map<String, Object> routeData(RouteGeometry geometry) {
+        Map<String, Object> routeData = new HashMap<>();
+        routeData.put("distanceMeters", geometry.totalMiles() * METERS_PER_MILE);
+        routeData.put("geometry", geometry);
+        return routeData;
+    }
+}
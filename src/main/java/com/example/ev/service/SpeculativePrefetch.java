@@ -0,0 +1,118 @@
+package com.example.ev.service;
+
+import com.example.ev.config.PlanMetrics;
+import com.example.ev.model.FindResponse;
+import com.example.ev.util.GeoUtils;
+import com.example.ev.util.Observations;
+import com.example.ev.util.RouteGeometry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Speculative station search for the next leg while the route from the chosen stop is still
+ * being fetched. The next search point is estimated on the current polyline: the new leg
+ * rejoins it near the stop and runs for the post-charge effective range. The station tiles
+ * around that point (plus marginMiles on every side) are loaded into the tile cache, so when
+ * the new route puts the real search point close to the estimate, the search is answered from
+ * cache and picks exactly the station the serial search would. A wrong estimate only leaves
+ * unused tiles in the cache. Needs the station tile cache; with the corridor search or the
+ * offline index nothing is prefetched.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SpeculativePrefetch {
+
+    private final ChargePointClient chargePointClient;
+    private final CorridorStationSearch corridorStationSearch;
+    private final PlanMetrics planMetrics;
+    private final ObservationRegistry observationRegistry;
+
+    @Value("${ev.speculative.enabled:false}")
+    private boolean enabled;
+
+    // Added to every side of the predicted search box, to absorb the difference between estimate and new route
+    @Value("${ev.speculative.marginMiles:1.0}")
+    private double marginMiles;
+
+    public boolean isEnabled() {
+        return enabled && !corridorStationSearch.isEnabled() && chargePointClient.canPrefetch();
+    }
+
+    /**
+     * Start prefetching the next leg's station tiles and return straight away. The tiles are
+     * loaded concurrently on the non-blocking client, as a child of the current plan observation.
+     */
+    void start(PlanState state, FindResponse.Stop station) {
+        double[] box = predictBox(state, station);
+        if (box != null) {
+            Observation parent = observationRegistry.getCurrentObservation();
+            subscribe(box, parent == null ? Context.empty() : Context.of(Observations.CONTEXT_KEY, parent));
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #start}; the returned Mono completes immediately.
+     */
+    Mono<Void> startReactive(PlanState state, FindResponse.Stop station) {
+        return Mono.deferContextual(context -> {
+            double[] box = predictBox(state, station);
+            if (box != null) {
+                subscribe(box, context);
+            }
+            return Mono.empty();
+        });
+    }
+
+    private void subscribe(double[] box, ContextView context) {
+        chargePointClient.prefetchStations(box)
+                .contextWrite(context)
+                .subscribe(done -> { }, e -> log.debug("Station prefetch failed: {}", e.toString()));
+    }
+
+    /**
+     * Compare the leg's real search point with the prefetched box, once the new route is known.
+     */
+    void confirm(PlanState state) {
+        double[] prefetched = state.prefetchBox;
+        if (prefetched == null) {
+            return;
+        }
+        state.prefetchBox = null;
+        double[] point = state.searchPoint;
+        double[] box = chargePointClient.searchBox(point[0], point[1], state.searchRadiusKm);
+        boolean confirmed = box[0] <= prefetched[0] && box[1] <= prefetched[1]
+                && box[2] >= prefetched[2] && box[3] >= prefetched[3];
+        double errorMiles = GeoUtils.haversineMiles(point[0], point[1], state.prefetchPoint[0], state.prefetchPoint[1]);
+        planMetrics.recordPrefetch(confirmed, errorMiles);
+        log.debug("Prefetched search point was {} miles off, {}", errorMiles, confirmed ? "used" : "discarded");
+    }
+
+    /**
+     * Box to prefetch for the leg starting at the station, or null when the destination looks
+     * reachable from it. Records the prediction in the plan state for {@link #confirm}.
+     */
+    private double[] predictBox(PlanState state, FindResponse.Stop station) {
+        RouteGeometry geometry = state.legGeometry;
+        // Only the stretch the stop was searched along, so a looping route cannot snap it to another pass
+        int vertex = state.nearestSearchedVertex(station.getLat(), station.getLon());
+        double rejoinMiles = geometry.milesTo(vertex, station.getLat(), station.getLon());
+        double reachMiles = geometry.distanceToMiles(vertex) + state.effectiveRange - rejoinMiles;
+        if (reachMiles >= geometry.totalMiles()) {
+            return null;
+        }
+        double[] point = geometry.point(geometry.lastIndexWithin(reachMiles));
+        double[] box = chargePointClient.searchBox(point[0], point[1],
+                state.searchRadiusKm + 2 * marginMiles * GeoUtils.KM_PER_MILE);
+        state.prefetchPoint = point;
+        state.prefetchBox = box;
+        return box;
+    }
+}
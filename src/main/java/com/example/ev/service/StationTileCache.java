@@ -0,0 +1,321 @@
+package com.example.ev.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Short-lived cache of ChargePoint stations keyed by a fixed lat/lon tile grid.
+ * A bounding-box query is answered by merging the tiles that cover it; only tiles
+ * that are missing or expired are fetched from the map API, concurrently. A tile whose answer
+ * fills a whole page may have been cut off, so a box touching one is not answered from the
+ * cache. With the persistent cache enabled, tiles are also written to disk and read back on a
+ * memory miss.
+ */
+@Component
+@RequiredArgsConstructor
+public class StationTileCache {
+
+    private final PersistentCache persistentCache;
+    // Missing tiles of one box are fetched in parallel; the map API bulkhead bounds the calls
+    @Qualifier("upstreamCallExecutor")
+    private final ExecutorService tileFetchExecutor;
+
+    @Value("${chargepoint.tileCache.enabled:true}")
+    private boolean enabled;
+
+    // Tile edge in degrees (0.05 deg is roughly 5.5 km of latitude)
+    @Value("${chargepoint.tileCache.tileDegrees:0.05}")
+    private double tileDegrees;
+
+    // Availability data goes stale quickly, so keep this short
+    @Value("${chargepoint.tileCache.ttlSeconds:120}")
+    private long ttlSeconds;
+
+    @Value("${chargepoint.tileCache.maxTiles:5000}")
+    private int maxTiles;
+
+    // Tiles are fetched with a larger page so a merged box still sees every nearby station
+    @Value("${chargepoint.tileCache.pageSize:50}")
+    private int pageSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private final LinkedHashMap<Long, Tile> tiles = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Tile> eldest) {
+            return size() > maxTiles;
+        }
+    };
+
+    /**
+     * Fetches all stations inside one tile's bounds. Returns null if the upstream call failed,
+     * in which case nothing is cached for that tile.
+     */
+    @FunctionalInterface
+    public interface TileFetcher {
+        List<ChargePointStation> fetch(double neLat, double neLon, double swLat, double swLon);
+    }
+
+    /**
+     * Non-blocking tile fetch. Completes empty if the upstream call failed.
+     */
+    @FunctionalInterface
+    public interface AsyncTileFetcher {
+        Mono<List<ChargePointStation>> fetch(double neLat, double neLon, double swLat, double swLon);
+    }
+
+    private static class Tile {
+        final List<ChargePointStation> stations;
+        final long expiresAtMillis;
+
+        Tile(List<ChargePointStation> stations, long expiresAtMillis) {
+            this.stations = stations;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Page size to fetch tiles with. */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Returns the stations inside the given box, de-duplicated across tiles. Missing tiles
+     * are fetched concurrently. Returns null if any missing tile could not be fetched, or if a
+     * tile was cut off at the page size; the box then has to be queried directly.
+     */
+    public List<ChargePointStation> getStations(double neLat, double neLon, double swLat, double swLon, TileFetcher fetcher) {
+        long now = System.currentTimeMillis();
+        Map<Long, List<ChargePointStation>> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        if (!lookup(neLat, neLon, swLat, swLon, now, found, missing)) {
+            return null;
+        }
+
+        // The caller's thread fetches the first missing tile, the pool the rest
+        List<Future<List<ChargePointStation>>> futures = new ArrayList<>();
+        for (int i = 1; i < missing.size(); i++) {
+            long key = missing.get(i);
+            futures.add(tileFetchExecutor.submit(() -> fetchTile(key, now, fetcher)));
+        }
+        try {
+            if (!missing.isEmpty()) {
+                found.put(missing.get(0), fetchTile(missing.get(0), now, fetcher));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                found.put(missing.get(i + 1), futures.get(i).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        } finally {
+            // Tiles already being fetched still land in the cache
+            for (Future<List<ChargePointStation>> future : futures) {
+                future.cancel(false);
+            }
+        }
+        return complete(found.values()) ? merge(neLat, neLon, swLat, swLon, found::get) : null;
+    }
+
+    /**
+     * Non-blocking variant of {@link #getStations}: missing tiles are fetched concurrently,
+     * then merged with the cached ones. Completes empty if any missing tile could not be
+     * fetched, or if a tile was cut off at the page size.
+     */
+    public Mono<List<ChargePointStation>> getStationsReactive(double neLat, double neLon, double swLat, double swLon,
+                                                    AsyncTileFetcher fetcher) {
+        long now = System.currentTimeMillis();
+        Map<Long, List<ChargePointStation>> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        if (!lookup(neLat, neLon, swLat, swLon, now, found, missing)) {
+            return Mono.empty();
+        }
+
+        return Flux.fromIterable(missing)
+                .flatMap(key -> {
+                    double tileSwLat = tileRow(key) * tileDegrees;
+                    double tileSwLon = tileCol(key) * tileDegrees;
+                    return fetcher.fetch(tileSwLat + tileDegrees, tileSwLon + tileDegrees, tileSwLat, tileSwLon)
+                            .doOnNext(stations -> putTile(key, stations, now))
+                            .map(stations -> Map.entry(key, stations));
+                })
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .mapNotNull(fetched -> {
+                    if (fetched.size() < missing.size() || !complete(fetched.values())) {
+                        return null;
+                    }
+                    found.putAll(fetched);
+                    return merge(neLat, neLon, swLat, swLon, found::get);
+                });
+    }
+
+    /**
+     * Sort the tiles covering the box into cached (with their stations) and missing ones.
+     * Returns false as soon as a cached tile turns out to be cut off.
+     */
+    private boolean lookup(double neLat, double neLon, double swLat, double swLon, long now,
+                           Map<Long, List<ChargePointStation>> found, List<Long> missing) {
+        for (long key : tileKeys(neLat, neLon, swLat, swLon)) {
+            List<ChargePointStation> stations = getCachedTile(key, now);
+            if (stations == null) {
+                missing.add(key);
+            } else if (isFull(stations)) {
+                return false;
+            } else {
+                found.put(key, stations);
+            }
+        }
+        return true;
+    }
+
+    private boolean complete(Iterable<List<ChargePointStation>> tileStations) {
+        for (List<ChargePointStation> stations : tileStations) {
+            if (stations == null || isFull(stations)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // A full page may have left out stations further from the tile centre
+    private boolean isFull(List<ChargePointStation> stations) {
+        return stations.size() >= pageSize;
+    }
+
+    public void clear() {
+        synchronized (tiles) {
+            tiles.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (tiles) {
+            return tiles.size();
+        }
+    }
+
+    private List<ChargePointStation> merge(double neLat, double neLon, double swLat, double swLon,
+                                 Function<Long, List<ChargePointStation>> tileStations) {
+        List<ChargePointStation> result = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+
+        for (long key : tileKeys(neLat, neLon, swLat, swLon)) {
+            List<ChargePointStation> stations = tileStations.apply(key);
+            if (stations == null) {
+                return null;
+            }
+            for (ChargePointStation station : stations) {
+                double stationLat = station.getLat();
+                double stationLon = station.getLon();
+                if (stationLat < swLat || stationLat > neLat || stationLon < swLon || stationLon > neLon) {
+                    continue;
+                }
+                // Stations on a tile border can be returned for both neighbouring tiles
+                if (seen.add(station.identity())) {
+                    result.add(station);
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<Long> tileKeys(double neLat, double neLon, double swLat, double swLon) {
+        List<Long> keys = new ArrayList<>();
+        for (int row = tileIndex(swLat); row <= tileIndex(neLat); row++) {
+            for (int col = tileIndex(swLon); col <= tileIndex(neLon); col++) {
+                keys.add(((long) row << 32) | (col & 0xffffffffL));
+            }
+        }
+        return keys;
+    }
+
+    private static int tileRow(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int tileCol(long key) {
+        return (int) key;
+    }
+
+    private List<ChargePointStation> getCachedTile(long key, long now) {
+        synchronized (tiles) {
+            Tile tile = tiles.get(key);
+            if (tile != null && tile.expiresAtMillis > now) {
+                hits.incrementAndGet();
+                return tile.stations;
+            }
+        }
+        PersistentCache.Hit<List<ChargePointStation>> stored = persistentCache.getTile(persistentKey(key));
+        if (stored != null) {
+            synchronized (tiles) {
+                tiles.put(key, new Tile(stored.getValue(), Math.min(stored.getExpiresAtMillis(), now + ttlSeconds * 1000L)));
+            }
+            hits.incrementAndGet();
+            return stored.getValue();
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private void putTile(long key, List<ChargePointStation> stations, long now) {
+        if (!stations.isEmpty() && stations.get(0).isStale()) {
+            return; // A last-known answer served while the map API is down; ask again next time
+        }
+        long expiresAt = now + ttlSeconds * 1000L;
+        synchronized (tiles) {
+            tiles.put(key, new Tile(stations, expiresAt));
+        }
+        persistentCache.putTile(persistentKey(key), stations, expiresAt);
+    }
+
+    // The tile size is part of the key so a changed tile size never reads tiles of the old grid
+    private String persistentKey(long key) {
+        return tileDegrees + "|" + key;
+    }
+
+    private List<ChargePointStation> fetchTile(long key, long now, TileFetcher fetcher) {
+        double swLat = tileRow(key) * tileDegrees;
+        double swLon = tileCol(key) * tileDegrees;
+        List<ChargePointStation> stations = fetcher.fetch(swLat + tileDegrees, swLon + tileDegrees, swLat, swLon);
+        if (stations != null) {
+            putTile(key, stations, now);
+        }
+        return stations;
+    }
+
+    private int tileIndex(double degrees) {
+        return (int) Math.floor(degrees / tileDegrees);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.ev.service;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Upstream lookups shared by every plan in one batch.
+ * Plans running inside a batch find the memo in their Reactor context; the first plan to ask
+ * for a key makes the call and later ones join its cached result, so each unique route or
+ * station query runs once per batch however many vehicles need it.
+ */
+public class UpstreamMemo {
+
+    public static final String ROUTES = "route";
+    public static final String STATIONS = "stations";
+
+    private final Map<String, Mono<?>> calls = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> uniqueCalls = new ConcurrentHashMap<>();
+    private final AtomicInteger sharedLookups = new AtomicInteger();
+
+    /**
+     * Run the call through the memo of the surrounding batch, or directly outside a batch.
+     */
+    static <T> Mono<T> share(String kind, String key, Supplier<Mono<T>> call) {
+        return Mono.deferContextual(context -> {
+            Optional<UpstreamMemo> memo = context.getOrEmpty(UpstreamMemo.class);
+            return memo.isPresent() ? memo.get().lookup(kind, key, call) : call.get();
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Mono<T> lookup(String kind, String key, Supplier<Mono<T>> call) {
+        boolean[] created = {false};
+        Mono<?> shared = calls.computeIfAbsent(kind + '|' + key, k -> {
+            created[0] = true;
+            return call.get().cache();
+        });
+        if (created[0]) {
+            uniqueCalls.computeIfAbsent(kind, k -> new AtomicInteger()).incrementAndGet();
+        } else {
+            sharedLookups.incrementAndGet();
+        }
+        return (Mono<T>) shared;
+    }
+
+    public int getUniqueCalls(String kind) {
+        AtomicInteger count = uniqueCalls.get(kind);
+        return count == null ? 0 : count.get();
+    }
+
+    public int getSharedLookups() {
+        return sharedLookups.get();
+    }
+}
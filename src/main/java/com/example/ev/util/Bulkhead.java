@@ -0,0 +1,88 @@
+package com.example.ev.util;
+
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Semaphore bulkhead limiting how many calls to one upstream can be in flight.
+ * Each upstream gets its own instance, so a slow ChargePoint cannot use up the
+ * threads and connections that Google Routes calls need.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrentCalls;
+    private final long maxWaitMillis;
+    private final Semaphore permits;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public Bulkhead(String name, int maxConcurrentCalls, long maxWaitMillis) {
+        this.name = name;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+    }
+
+    public static class FullException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public FullException(String name) {
+            super("Bulkhead '" + name + "' is full");
+        }
+    }
+
+    /**
+     * Blocking acquire, waiting at most maxWaitMillis. Every successful call must be
+     * paired with {@link #release()}.
+     */
+    public void acquire() {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.incrementAndGet();
+            throw new FullException(name);
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Run a non-blocking call inside the bulkhead. Never waits for a permit: when the
+     * bulkhead is full the call fails immediately with {@link FullException}.
+     */
+    public <T> Mono<T> wrap(Mono<T> call) {
+        return Mono.defer(() -> {
+            if (!permits.tryAcquire()) {
+                rejected.incrementAndGet();
+                return Mono.error(new FullException(name));
+            }
+            return call.doFinally(signal -> permits.release());
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public int getInFlight() {
+        return maxConcurrentCalls - permits.availablePermits();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.ev.util;
+
+import java.util.Locale;
+
+/**
+ * Batch great-circle distance over packed lat/lon arrays (lat0, lon0, lat1, lon1, ...).
+ * cos(latitude) is computed once per vertex and shared by every distance involving that
+ * vertex, and a leg's segment lengths are computed in one loop without a loop-carried
+ * dependency, with the prefix sum in a separate pass, so the JIT can unroll the loop and,
+ * for the trig-free equirectangular form, vectorize it.
+ */
+public final class GeoKernel {
+
+    private static final double RADIANS = Math.PI / 180.0;
+    private static final double EARTH_DIAMETER_MILES = 2.0 * GeoUtils.EARTH_RADIUS_MILES;
+
+    /**
+     * How segment lengths between consecutive polyline vertices are computed.
+     */
+    public enum Distance {
+        /** Haversine great-circle distance; exact on the spherical earth model. */
+        HAVERSINE,
+        /**
+         * Equirectangular approximation using the mean cos(latitude) of the two ends; no trig
+         * per segment. Against haversine, the relative error is below 1e-5 for segments up to
+         * 10 miles and below 1e-3 up to 100 miles, at latitudes up to 70 degrees. Decoded
+         * polyline segments are well under a mile, so leg lengths agree to the foot.
+         */
+        EQUIRECTANGULAR;
+
+        public static Distance of(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private GeoKernel() {
+    }
+
+    /**
+     * cosLat[i] = cos(latitude of vertex i) for the first n vertices.
+     */
+    public static void cosLatitudes(double[] coords, int n, double[] cosLat) {
+        for (int i = 0; i < n; i++) {
+            cosLat[i] = Math.cos(coords[2 * i] * RADIANS);
+        }
+    }
+
+    /**
+     * segments[i] = miles from vertex i - 1 to vertex i for i in [1, n); segments[0] = 0.
+     */
+    public static void segmentMiles(double[] coords, double[] cosLat, int n, Distance distance, double[] segments) {
+        if (n == 0) {
+            return;
+        }
+        segments[0] = 0.0;
+        if (distance == Distance.EQUIRECTANGULAR) {
+            for (int i = 1; i < n; i++) {
+                double x = (coords[2 * i + 1] - coords[2 * i - 1]) * RADIANS * 0.5 * (cosLat[i - 1] + cosLat[i]);
+                double y = (coords[2 * i] - coords[2 * i - 2]) * RADIANS;
+                segments[i] = GeoUtils.EARTH_RADIUS_MILES * Math.sqrt(x * x + y * y);
+            }
+        } else {
+            for (int i = 1; i < n; i++) {
+                double sinDLat = Math.sin((coords[2 * i] - coords[2 * i - 2]) * RADIANS * 0.5);
+                double sinDLon = Math.sin((coords[2 * i + 1] - coords[2 * i - 1]) * RADIANS * 0.5);
+                double h = sinDLat * sinDLat + cosLat[i - 1] * cosLat[i] * sinDLon * sinDLon;
+                segments[i] = EARTH_DIAMETER_MILES * Math.asin(Math.sqrt(Math.min(1.0, h)));
+            }
+        }
+    }
+
+    /**
+     * Prefix sum of the segment lengths into cumulative, which may be the segments array itself.
+     *
+     * @return the longest segment
+     */
+    public static double accumulate(double[] segments, int n, double[] cumulative) {
+        double total = 0.0;
+        double maxSegment = 0.0;
+        for (int i = 0; i < n; i++) {
+            double segment = segments[i];
+            maxSegment = Math.max(maxSegment, segment);
+            total += segment;
+            cumulative[i] = total;
+        }
+        return maxSegment;
+    }
+
+    /**
+     * Haversine term between vertex i and a point given as (lat, lon, cos(lat)). It grows
+     * with distance, so vertices can be compared or tested against {@link #term(double)}
+     * without the asin and sqrt.
+     */
+    public static double term(double[] coords, double[] cosLat, int i, double lat, double lon, double cosPointLat) {
+        double sinDLat = Math.sin((lat - coords[2 * i]) * RADIANS * 0.5);
+        double sinDLon = Math.sin((lon - coords[2 * i + 1]) * RADIANS * 0.5);
+        return sinDLat * sinDLat + cosLat[i] * cosPointLat * sinDLon * sinDLon;
+    }
+
+    /**
+     * Haversine term of a distance: term(...) <= term(miles) exactly when the distance is within miles.
+     */
+    public static double term(double miles) {
+        double sinHalfAngle = Math.sin(Math.min(Math.PI / 2, miles / EARTH_DIAMETER_MILES));
+        return sinHalfAngle * sinHalfAngle;
+    }
+
+    /**
+     * Miles corresponding to a haversine term.
+     */
+    public static double miles(double term) {
+        return EARTH_DIAMETER_MILES * Math.asin(Math.sqrt(Math.min(1.0, term)));
+    }
+
+    /**
+     * Vertex in [from, to] closest to the point; the first one on ties.
+     */
+    public static int nearestVertex(double[] coords, double[] cosLat, int from, int to, double lat, double lon) {
+        double cosPointLat = Math.cos(lat * RADIANS);
+        int nearest = from;
+        double nearestTerm = Double.MAX_VALUE;
+        for (int i = from; i <= to; i++) {
+            double term = term(coords, cosLat, i, lat, lon, cosPointLat);
+            if (term < nearestTerm) {
+                nearestTerm = term;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * First vertex in [from, to] within miles of the point, or -1.
+     */
+    public static int firstVertexWithin(double[] coords, double[] cosLat, int from, int to,
+                                        double lat, double lon, double miles) {
+        double cosPointLat = Math.cos(lat * RADIANS);
+        double threshold = term(miles);
+        for (int i = from; i <= to; i++) {
+            if (term(coords, cosLat, i, lat, lon, cosPointLat) <= threshold) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
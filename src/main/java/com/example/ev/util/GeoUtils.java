@@ -0,0 +1,26 @@
+package com.example.ev.util;
+
+/**
+ * Great-circle distance helpers shared by the planner and the geometry index.
+ */
+public final class GeoUtils {
+
+    public static final double EARTH_RADIUS_MILES = 3958.8;
+    public static final double KM_PER_MILE = 1.609344;
+
+    private static final double RADIANS = Math.PI / 180.0;
+
+    private GeoUtils() {
+    }
+
+    /**
+     * Distance between two points. For many distances over one polyline use {@link GeoKernel},
+     * which shares the per-vertex cosines.
+     */
+    public static double haversineMiles(double lat1, double lon1, double lat2, double lon2) {
+        double sinDLat = Math.sin((lat2 - lat1) * RADIANS * 0.5);
+        double sinDLon = Math.sin((lon2 - lon1) * RADIANS * 0.5);
+        double a = sinDLat * sinDLat + Math.cos(lat1 * RADIANS) * Math.cos(lat2 * RADIANS) * sinDLon * sinDLon;
+        return 2 * EARTH_RADIUS_MILES * Math.asin(Math.sqrt(Math.min(1.0, a)));
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.ev.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free count, sum, max and cumulative buckets of recorded values, enough to expose a
+ * Prometheus histogram and estimate percentiles. Buckets are fixed upper bounds; values above
+ * the last bound only land in the implicit +Inf bucket.
+ */
+public class Histogram {
+
+    private final double[] bounds;
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+    private final AtomicLong maxBits = new AtomicLong(Double.doubleToLongBits(0.0));
+
+    public Histogram(double... bounds) {
+        this.bounds = bounds.clone();
+        this.buckets = new LongAdder[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(double value) {
+        count.increment();
+        sum.add(value);
+        for (int i = 0; i < bounds.length; i++) {
+            if (value <= bounds[i]) {
+                buckets[i].increment();
+                break;
+            }
+        }
+        long bits = maxBits.get();
+        while (value > Double.longBitsToDouble(bits) && !maxBits.compareAndSet(bits, Double.doubleToLongBits(value))) {
+            bits = maxBits.get();
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getSum() {
+        return sum.sum();
+    }
+
+    public double getMax() {
+        return Double.longBitsToDouble(maxBits.get());
+    }
+
+    public double[] getBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * Number of values at or below each bound, in bound order.
+     */
+    public long[] cumulativeCounts() {
+        long[] cumulative = new long[bounds.length];
+        long running = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            running += buckets[i].sum();
+            cumulative[i] = running;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Percentile (0-1) interpolated within its bucket; capped at the recorded max.
+     */
+    public double percentile(double quantile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0.0;
+        }
+        double rank = quantile * total;
+        long[] cumulative = cumulativeCounts();
+        double lower = 0.0;
+        long below = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            if (cumulative[i] >= rank) {
+                long inBucket = cumulative[i] - below;
+                double fraction = inBucket == 0 ? 1.0 : (rank - below) / inBucket;
+                return Math.min(getMax(), lower + (bounds[i] - lower) * fraction);
+            }
+            lower = bounds[i];
+            below = cumulative[i];
+        }
+        return getMax();
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.ev.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only key/value records in one memory-mapped file, for caches that should survive a
+ * restart. Each record carries its expiry time and a checksum. Opening the file scans it once
+ * to rebuild the key index; the scan stops at the first incomplete or corrupt record, so a
+ * crash part way through a write loses only that record. When the file is full, the live
+ * records are copied into a new file that atomically replaces it: expired records are
+ * dropped, then the oldest ones until the live data fits in half the capacity.
+ *
+ * <p>Record layout: length (bytes after this field), CRC32 of the bytes after the CRC,
+ * expiry millis, key length, key (UTF-8), payload. A zero length marks the end of the log.
+ */
+public final class MappedRecordStore implements Closeable {
+
+    private static final int MAGIC = 0x45564331; // "EVC1"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 4 + 4 + 8 + 2;
+
+    private final Path file;
+    private final int capacity;
+    private final Map<String, Integer> index = new HashMap<>(); // key -> offset of its latest record
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int end;
+
+    /**
+     * A record's payload (a read-only view into the mapped file) and expiry time.
+     */
+    public static final class Record {
+        private final ByteBuffer payload;
+        private final long expiresAtMillis;
+
+        Record(ByteBuffer payload, long expiresAtMillis) {
+            this.payload = payload;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public ByteBuffer getPayload() {
+            return payload;
+        }
+
+        public long getExpiresAtMillis() {
+            return expiresAtMillis;
+        }
+    }
+
+    private MappedRecordStore(Path file, int capacity) {
+        this.file = file;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Open or create the store, recovering the records still live at {@code now}.
+     */
+    public static MappedRecordStore open(Path file, int capacityBytes, long now) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Files.deleteIfExists(compactionFile(file)); // Left over by a crash during compaction
+        MappedRecordStore store = new MappedRecordStore(file, capacityBytes);
+        store.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        store.buffer = store.channel.map(FileChannel.MapMode.READ_WRITE, 0, capacityBytes);
+        store.recover(now);
+        return store;
+    }
+
+    public synchronized Record get(String key, long now) {
+        Integer offset = index.get(key);
+        if (offset == null) {
+            return null;
+        }
+        long expiresAt = buffer.getLong(offset + 8);
+        if (expiresAt <= now) {
+            index.remove(key);
+            return null;
+        }
+        int length = buffer.getInt(offset);
+        int keyLength = buffer.getShort(offset + 16) & 0xffff;
+        int payloadStart = offset + RECORD_HEADER_BYTES + keyLength;
+        int payloadEnd = offset + 4 + length;
+        ByteBuffer payload = buffer.duplicate().position(payloadStart).limit(payloadEnd).slice().asReadOnlyBuffer();
+        return new Record(payload, expiresAt);
+    }
+
+    /**
+     * Whether appending a record of this key and payload size would compact the file first.
+     */
+    public synchronized boolean needsCompaction(String key, int payloadBytes) {
+        int recordBytes = RECORD_HEADER_BYTES + key.getBytes(StandardCharsets.UTF_8).length + payloadBytes;
+        return end + recordBytes + 4 > capacity;
+    }
+
+    /**
+     * Append a record replacing any earlier one for the key, compacting the file first when it
+     * is full. Returns false if the record is too large to store (more than a quarter of the capacity).
+     */
+    public synchronized boolean put(String key, long expiresAtMillis, byte[] payload, long now) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int recordBytes = RECORD_HEADER_BYTES + keyBytes.length + payload.length;
+        if (keyBytes.length > 0xffff || recordBytes > capacity / 4) {
+            return false;
+        }
+        if (end + recordBytes + 4 > capacity) {
+            compact(now);
+        }
+        int offset = end;
+        // Terminate the log after this record first and write the length last, so a record
+        // cut short by a crash reads as the end of the log or fails its checksum
+        buffer.putInt(offset + recordBytes, 0);
+        buffer.putLong(offset + 8, expiresAtMillis);
+        buffer.putShort(offset + 16, (short) keyBytes.length);
+        buffer.put(offset + RECORD_HEADER_BYTES, keyBytes);
+        buffer.put(offset + RECORD_HEADER_BYTES + keyBytes.length, payload);
+        buffer.putInt(offset + 4, checksum(buffer, offset + 8, recordBytes - 8));
+        buffer.putInt(offset, recordBytes - 4);
+        index.put(key, offset);
+        end = offset + recordBytes;
+        return true;
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /** Bytes of the file in use, live or not. */
+    public synchronized int usedBytes() {
+        return end;
+    }
+
+    public int capacityBytes() {
+        return capacity;
+    }
+
+    /**
+     * Write the mapped pages to disk.
+     */
+    public synchronized void force() {
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void recover(long now) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            // New file, or one written in another format: start empty
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(FILE_HEADER_BYTES, 0);
+            end = FILE_HEADER_BYTES;
+            return;
+        }
+        int offset = FILE_HEADER_BYTES;
+        while (offset + RECORD_HEADER_BYTES <= capacity) {
+            int length = buffer.getInt(offset);
+            if (length < RECORD_HEADER_BYTES - 4 || length > capacity - offset - 4
+                    || buffer.getInt(offset + 4) != checksum(buffer, offset + 8, length - 4)) {
+                break;
+            }
+            String key = key(buffer, offset);
+            if (buffer.getLong(offset + 8) > now) {
+                index.put(key, offset);
+            } else {
+                index.remove(key); // The latest value for this key has expired
+            }
+            offset += 4 + length;
+        }
+        end = offset;
+        if (end + 4 <= capacity) {
+            buffer.putInt(end, 0);
+        }
+    }
+
+    /**
+     * Copy the records live at {@code now} into a new file that replaces this one. Slow: it
+     * copies up to half the capacity and forces it to disk, holding the store's lock.
+     */
+    public synchronized void compact(long now) {
+        List<Integer> live = new ArrayList<>();
+        index.forEach((key, offset) -> {
+            if (buffer.getLong(offset + 8) > now) {
+                live.add(offset);
+            }
+        });
+        live.sort(null); // Log order is write order, oldest first
+        long liveBytes = 0;
+        for (int offset : live) {
+            liveBytes += 4 + buffer.getInt(offset);
+        }
+        int first = 0;
+        while (first < live.size() && liveBytes > (capacity - FILE_HEADER_BYTES) / 2) {
+            liveBytes -= 4 + buffer.getInt(live.get(first++));
+        }
+
+        Path target = compactionFile(file);
+        try {
+            FileChannel targetChannel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer targetBuffer = targetChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            targetBuffer.putInt(0, MAGIC);
+            targetBuffer.putInt(4, VERSION);
+            Map<String, Integer> targetIndex = new HashMap<>();
+            int targetEnd = FILE_HEADER_BYTES;
+            for (int i = first; i < live.size(); i++) {
+                int offset = live.get(i);
+                int recordBytes = 4 + buffer.getInt(offset);
+                targetBuffer.put(targetEnd, buffer, offset, recordBytes);
+                targetIndex.put(key(buffer, offset), targetEnd);
+                targetEnd += recordBytes;
+            }
+            targetBuffer.putInt(targetEnd, 0);
+            targetBuffer.force();
+            // The complete new file replaces the old one in one step; a crash before this keeps the old file
+            Files.move(target, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            channel.close();
+            channel = targetChannel;
+            buffer = targetBuffer;
+            index.clear();
+            index.putAll(targetIndex);
+            end = targetEnd;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not compact " + file, e);
+        }
+    }
+
+    private static String key(ByteBuffer buffer, int offset) {
+        int keyLength = buffer.getShort(offset + 16) & 0xffff;
+        byte[] key = new byte[keyLength];
+        buffer.get(offset + RECORD_HEADER_BYTES, key);
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(offset).limit(offset + length));
+        return (int) crc.getValue();
+    }
+
+    private static Path compactionFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".compact");
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.ev.util;
+
+import io.micrometer.common.KeyValues;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+/**
+ * Observation helpers for the non-blocking paths. The blocking paths use
+ * {@link Observation#observeChecked} directly and get their parent from the current thread;
+ * a Mono carries its current observation in the Reactor context instead.
+ */
+public final class Observations {
+
+    /**
+     * Reactor context key of the current observation (the key Micrometer's context propagation uses).
+     */
+    public static final String CONTEXT_KEY = "micrometer.observation";
+
+    private Observations() {
+    }
+
+    public static Observation current(ContextView context) {
+        return context.getOrDefault(CONTEXT_KEY, null);
+    }
+
+    /**
+     * Observe a Mono from subscription to completion, error or cancellation, as a child of the
+     * observation in the subscriber's context; work subscribed inside sees this one as current.
+     */
+    public static <T> Mono<T> observe(ObservationRegistry registry, String name, KeyValues tags, Mono<T> work) {
+        return Mono.deferContextual(context -> {
+            Observation observation = Observation.createNotStarted(name, registry)
+                    .parentObservation(current(context))
+                    .lowCardinalityKeyValues(tags)
+                    .start();
+            return work.contextWrite(inner -> inner.put(CONTEXT_KEY, observation))
+                    .doOnError(observation::error)
+                    .doFinally(signal -> observation.stop());
+        });
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.ev.util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -9,10 +10,96 @@ import java.util.List;
  */
 public class Polyline {
 
+    /**
+     * Reusable decode target: vertices are written as packed lat/lon pairs into one
+     * primitive array that only grows, so a buffer kept per thread decodes any number
+     * of routes without per-vertex allocation.
+     */
+    public static class Buffer {
+        private double[] coords = new double[512];
+        private double[] cumulativeMiles = new double[256];
+        private double[] cosLat = new double[256];
+        private int size;
+        private double maxSegmentMiles;
+
+        /** Number of decoded vertices. */
+        public int size() {
+            return size;
+        }
+
+        /** Packed lat/lon pairs; only the first size() * 2 entries are valid. */
+        public double[] coords() {
+            return coords;
+        }
+
+        /** Along-route miles to each vertex; only valid when decoded with distances. */
+        public double[] cumulativeMiles() {
+            return cumulativeMiles;
+        }
+
+        /** cos(latitude) of each vertex; only valid when decoded with distances. */
+        public double[] cosLat() {
+            return cosLat;
+        }
+
+        /** Longest segment seen; only valid when decoded with distances. */
+        public double maxSegmentMiles() {
+            return maxSegmentMiles;
+        }
+
+        public void clear() {
+            size = 0;
+            maxSegmentMiles = 0.0;
+        }
+
+        private void ensureCapacity(int vertices, boolean withDistance) {
+            if (coords.length < vertices * 2) {
+                coords = Arrays.copyOf(coords, Math.max(vertices * 2, coords.length * 2));
+            }
+            if (withDistance && cumulativeMiles.length < vertices) {
+                int capacity = Math.max(vertices, cumulativeMiles.length * 2);
+                cumulativeMiles = new double[capacity];
+                cosLat = new double[capacity];
+            }
+        }
+    }
+
     public static List<double[]> decode(String encoded) {
-        List<double[]> path = new ArrayList<double[]>();
+        Buffer buffer = new Buffer();
+        decodeInto(encoded, buffer, false);
+        List<double[]> path = new ArrayList<double[]>(buffer.size());
+        double[] coords = buffer.coords();
+        for (int i = 0; i < buffer.size(); i++) {
+            path.add(new double[]{coords[2 * i], coords[2 * i + 1]});
+        }
+        return path;
+    }
+
+    /**
+     * Decode into a reusable buffer, replacing its contents. When withDistance is set the
+     * cumulative along-route distance (haversine) and longest segment are computed as well.
+     *
+     * @return the number of vertices decoded
+     */
+    public static int decodeInto(CharSequence encoded, Buffer buffer, boolean withDistance) {
+        return decodeInto(encoded, buffer, withDistance, GeoKernel.Distance.HAVERSINE);
+    }
+
+    /**
+     * Decode into a reusable buffer, computing distances with the given segment distance.
+     * The vertices are decoded first and measured afterwards in one batch pass over the
+     * packed coordinates.
+     *
+     * @return the number of vertices decoded
+     */
+    public static int decodeInto(CharSequence encoded, Buffer buffer, boolean withDistance, GeoKernel.Distance distance) {
+        buffer.clear();
         int index = 0, len = encoded.length();
         int lat = 0, lng = 0;
+        // Every vertex takes at least two characters, so this bounds the vertex count
+        buffer.ensureCapacity(len / 2 + 1, withDistance);
+        double[] coords = buffer.coords;
+        int n = 0;
 
         while (index < len) {
             int b, shift = 0, result = 0;
@@ -34,10 +121,54 @@ public class Polyline {
             int dlng = ((result & 1) != 0 ? ~(result >> 1) : (result >> 1));
             lng += dlng;
 
-            double latitude = lat / 1E5;
-            double longitude = lng / 1E5;
-            path.add(new double[]{latitude, longitude});
+            coords[2 * n] = lat / 1E5;
+            coords[2 * n + 1] = lng / 1E5;
+            n++;
         }
-        return path;
+        buffer.size = n;
+
+        if (withDistance) {
+            // Segment lengths go into the cumulative array and are summed in place
+            GeoKernel.cosLatitudes(coords, n, buffer.cosLat);
+            GeoKernel.segmentMiles(coords, buffer.cosLat, n, distance, buffer.cumulativeMiles);
+            buffer.maxSegmentMiles = GeoKernel.accumulate(buffer.cumulativeMiles, n, buffer.cumulativeMiles);
+        }
+        return n;
+    }
+
+    /**
+     * Encode vertices [fromVertex, toVertex) of a packed lat/lon array, e.g. to re-emit
+     * a trimmed part of a decoded route without another routing call.
+     */
+    public static String encode(double[] coords, int fromVertex, int toVertex) {
+        StringBuilder out = new StringBuilder((toVertex - fromVertex) * 8);
+        long prevLat = 0, prevLng = 0;
+        for (int i = fromVertex; i < toVertex; i++) {
+            long lat = Math.round(coords[2 * i] * 1E5);
+            long lng = Math.round(coords[2 * i + 1] * 1E5);
+            encodeValue(lat - prevLat, out);
+            encodeValue(lng - prevLng, out);
+            prevLat = lat;
+            prevLng = lng;
+        }
+        return out.toString();
+    }
+
+    public static String encode(List<double[]> path) {
+        double[] coords = new double[path.size() * 2];
+        for (int i = 0; i < path.size(); i++) {
+            coords[2 * i] = path.get(i)[0];
+            coords[2 * i + 1] = path.get(i)[1];
+        }
+        return encode(coords, 0, path.size());
+    }
+
+    private static void encodeValue(long value, StringBuilder out) {
+        long v = value < 0 ? ~(value << 1) : (value << 1);
+        while (v >= 0x20) {
+            out.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        out.append((char) (v + 63));
     }
 }
@@ -0,0 +1,66 @@
+package com.example.ev.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A slice of an upstream JSON document kept as unparsed bytes.
+ * It is written verbatim when the response is serialized, so station payloads we only
+ * pass through to clients are never turned into trees or maps.
+ */
+public final class RawJson implements JsonSerializable {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final byte[] source;
+    private final int offset;
+    private final int length;
+
+    public RawJson(byte[] source, int offset, int length) {
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Copy the JSON bytes into the buffer.
+     */
+    public void writeTo(ByteBuffer out) {
+        out.put(source, offset, length);
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        if (gen.canWriteBinaryNatively()) {
+            // Binary formats (CBOR, Smile) cannot take raw JSON text; re-encode it token by token
+            try (JsonParser parser = JSON_FACTORY.createParser(source, offset, length)) {
+                parser.nextToken();
+                gen.copyCurrentStructure(parser);
+            }
+            return;
+        }
+        gen.writeRawValue(toString());
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+        serialize(gen, serializers);
+    }
+
+    @Override
+    public String toString() {
+        return new String(source, offset, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,332 @@
+package com.example.ev.util;
+
+import com.example.ev.model.FindRequest;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per-leg index over a decoded polyline.
+ * Holds the vertices as one packed lat/lon array together with a prefix sum of segment
+ * lengths, so "how far can we get" and "how far is vertex i" are a binary search and an
+ * array read instead of a walk over the whole polyline.
+ * Instances are immutable and safe to share between requests.
+ */
+public final class RouteGeometry {
+
+    private final double[] coords;          // lat0, lon0, lat1, lon1, ...
+    private final double[] cosLat;          // cos(latitude) of vertex i, shared by every distance to it
+    private final double[] cumulativeMiles; // distance from vertex 0 to vertex i along the polyline
+    private final double maxSegmentMiles;
+
+    // Per-thread decode scratch space; only the exact-size copies escape into a geometry
+    private static final ThreadLocal<Polyline.Buffer> DECODE_BUFFER = ThreadLocal.withInitial(Polyline.Buffer::new);
+
+    private RouteGeometry(double[] coords, double[] cosLat, double[] cumulativeMiles, double maxSegmentMiles) {
+        this.coords = coords;
+        this.cosLat = cosLat;
+        this.cumulativeMiles = cumulativeMiles;
+        this.maxSegmentMiles = maxSegmentMiles;
+    }
+
+    /**
+     * Decode a Google encoded polyline straight into a geometry, with haversine segment lengths.
+     */
+    public static RouteGeometry decode(String encoded) {
+        return decode(encoded, GeoKernel.Distance.HAVERSINE);
+    }
+
+    /**
+     * Decode a Google encoded polyline straight into a geometry. Coordinates and cumulative
+     * distances are produced without per-vertex objects, the distances in one batch pass.
+     */
+    public static RouteGeometry decode(String encoded, GeoKernel.Distance distance) {
+        Polyline.Buffer buffer = DECODE_BUFFER.get();
+        int n = Polyline.decodeInto(encoded, buffer, true, distance);
+        return new RouteGeometry(Arrays.copyOf(buffer.coords(), n * 2), Arrays.copyOf(buffer.cosLat(), n),
+                Arrays.copyOf(buffer.cumulativeMiles(), n), buffer.maxSegmentMiles());
+    }
+
+    public static RouteGeometry of(List<double[]> polyline) {
+        int n = polyline.size();
+        double[] coords = new double[n * 2];
+        for (int i = 0; i < n; i++) {
+            double[] point = polyline.get(i);
+            coords[2 * i] = point[0];
+            coords[2 * i + 1] = point[1];
+        }
+        return ofPacked(coords, n);
+    }
+
+    /**
+     * Build from packed lat/lon pairs. The array is owned by the geometry afterwards.
+     */
+    public static RouteGeometry ofPacked(double[] coords, int size) {
+        double[] cosLat = new double[size];
+        double[] cumulative = new double[size];
+        GeoKernel.cosLatitudes(coords, size, cosLat);
+        GeoKernel.segmentMiles(coords, cosLat, size, GeoKernel.Distance.HAVERSINE, cumulative);
+        double maxSegment = GeoKernel.accumulate(cumulative, size, cumulative);
+        return new RouteGeometry(coords, cosLat, cumulative, maxSegment);
+    }
+
+    /**
+     * Bytes {@link #writeTo} writes: the vertex count, the coordinates and the cumulative distances.
+     */
+    public int serializedBytes() {
+        return Integer.BYTES + 3 * size() * Double.BYTES;
+    }
+
+    /**
+     * Write the geometry for {@link #readFrom}. Cumulative distances are kept as computed, so a
+     * geometry read back measures exactly the same as this one, simplified or not.
+     */
+    public void writeTo(ByteBuffer out) {
+        out.putInt(size());
+        out.asDoubleBuffer().put(coords).put(cumulativeMiles);
+        out.position(out.position() + 3 * size() * Double.BYTES);
+    }
+
+    public static RouteGeometry readFrom(ByteBuffer in) {
+        int n = in.getInt();
+        double[] coords = new double[2 * n];
+        double[] cumulative = new double[n];
+        in.asDoubleBuffer().get(coords).get(cumulative);
+        in.position(in.position() + 3 * n * Double.BYTES);
+        double[] cosLat = new double[n];
+        GeoKernel.cosLatitudes(coords, n, cosLat);
+        double maxSegment = 0.0;
+        for (int i = 1; i < n; i++) {
+            maxSegment = Math.max(maxSegment, cumulative[i] - cumulative[i - 1]);
+        }
+        return new RouteGeometry(coords, cosLat, cumulative, maxSegment);
+    }
+
+    /**
+     * The rest of the route from vertex {@code from}, with distances measured from there.
+     */
+    public RouteGeometry slice(int from) {
+        int n = size() - from;
+        double[] cumulative = new double[n];
+        double maxSegment = 0.0;
+        for (int i = 0; i < n; i++) {
+            cumulative[i] = cumulativeMiles[from + i] - cumulativeMiles[from];
+            if (i > 0) {
+                maxSegment = Math.max(maxSegment, cumulative[i] - cumulative[i - 1]);
+            }
+        }
+        return new RouteGeometry(Arrays.copyOfRange(coords, 2 * from, 2 * size()),
+                Arrays.copyOfRange(cosLat, from, size()), cumulative, maxSegment);
+    }
+
+    /**
+     * Douglas-Peucker simplification: drops vertices that lie within toleranceMiles of the
+     * chord between the vertices kept around them, but keeps vertices at most maxSpacingMiles
+     * apart along the route. Kept vertices keep their along-route distance from the full
+     * polyline, so range and SOC maths are unchanged at every vertex that remains.
+     */
+    public RouteGeometry simplify(double toleranceMiles, double maxSpacingMiles) {
+        int n = size();
+        if (n < 3) {
+            return this;
+        }
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        int kept = 2;
+        // Pending [first, last] ranges; explicit stack so long routes cannot overflow the call stack
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            if (last - first < 2) {
+                continue;
+            }
+            int split = farthestFromChord(first, last, toleranceMiles);
+            if (split < 0 && cumulativeMiles[last] - cumulativeMiles[first] > maxSpacingMiles) {
+                split = lastIndexWithin((cumulativeMiles[first] + cumulativeMiles[last]) / 2);
+                split = Math.min(last - 1, Math.max(first + 1, split));
+            }
+            if (split < 0) {
+                continue;
+            }
+            keep[split] = true;
+            kept++;
+            if (top + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[top++] = first;
+            stack[top++] = split;
+            stack[top++] = split;
+            stack[top++] = last;
+        }
+        if (kept == n) {
+            return this;
+        }
+
+        double[] keptCoords = new double[2 * kept];
+        double[] keptCosLat = new double[kept];
+        double[] keptCumulative = new double[kept];
+        double maxSegment = 0.0;
+        for (int i = 0, k = 0; i < n; i++) {
+            if (!keep[i]) {
+                continue;
+            }
+            keptCoords[2 * k] = coords[2 * i];
+            keptCoords[2 * k + 1] = coords[2 * i + 1];
+            keptCosLat[k] = cosLat[i];
+            keptCumulative[k] = cumulativeMiles[i];
+            if (k > 0) {
+                maxSegment = Math.max(maxSegment, keptCumulative[k] - keptCumulative[k - 1]);
+            }
+            k++;
+        }
+        return new RouteGeometry(keptCoords, keptCosLat, keptCumulative, maxSegment);
+    }
+
+    /**
+     * Vertex strictly between first and last furthest from the first-last chord, or -1 if none
+     * is further than toleranceMiles. Distances are planar around the first vertex, which is
+     * accurate at the scale of a tolerance.
+     */
+    private int farthestFromChord(int first, int last, double toleranceMiles) {
+        double milesPerDegLat = GeoUtils.EARTH_RADIUS_MILES * Math.PI / 180.0;
+        double milesPerDegLon = milesPerDegLat * cosLat[first];
+        double lat0 = coords[2 * first];
+        double lon0 = coords[2 * first + 1];
+        double cx = (coords[2 * last + 1] - lon0) * milesPerDegLon;
+        double cy = (coords[2 * last] - lat0) * milesPerDegLat;
+        double chordSquared = cx * cx + cy * cy;
+
+        int farthest = -1;
+        double farthestSquared = toleranceMiles * toleranceMiles;
+        for (int i = first + 1; i < last; i++) {
+            double px = (coords[2 * i + 1] - lon0) * milesPerDegLon;
+            double py = (coords[2 * i] - lat0) * milesPerDegLat;
+            double t = chordSquared == 0.0 ? 0.0 : Math.max(0.0, Math.min(1.0, (px * cx + py * cy) / chordSquared));
+            double dx = px - t * cx;
+            double dy = py - t * cy;
+            double distanceSquared = dx * dx + dy * dy;
+            if (distanceSquared > farthestSquared) {
+                farthestSquared = distanceSquared;
+                farthest = i;
+            }
+        }
+        return farthest;
+    }
+
+    /**
+     * Head followed by tail, joined by a straight segment from the last head vertex to the first tail vertex.
+     */
+    public static RouteGeometry join(RouteGeometry head, RouteGeometry tail) {
+        int h = head.size();
+        int n = h + tail.size();
+        double[] coords = new double[2 * n];
+        System.arraycopy(head.coords, 0, coords, 0, 2 * h);
+        System.arraycopy(tail.coords, 0, coords, 2 * h, 2 * tail.size());
+        double[] cosLat = new double[n];
+        System.arraycopy(head.cosLat, 0, cosLat, 0, h);
+        System.arraycopy(tail.cosLat, 0, cosLat, h, tail.size());
+
+        double junction = GeoUtils.haversineMiles(head.lat(h - 1), head.lon(h - 1), tail.lat(0), tail.lon(0));
+        double[] cumulative = new double[n];
+        System.arraycopy(head.cumulativeMiles, 0, cumulative, 0, h);
+        double base = head.totalMiles() + junction;
+        for (int i = 0; i < tail.size(); i++) {
+            cumulative[h + i] = base + tail.cumulativeMiles[i];
+        }
+        double maxSegment = Math.max(junction, Math.max(head.maxSegmentMiles, tail.maxSegmentMiles));
+        return new RouteGeometry(coords, cosLat, cumulative, maxSegment);
+    }
+
+    /**
+     * Vertex closest to the given point.
+     */
+    public int nearestVertex(double lat, double lon) {
+        return nearestVertex(lat, lon, 0, size() - 1);
+    }
+
+    /**
+     * Vertex in [from, to] closest to the given point.
+     */
+    public int nearestVertex(double lat, double lon, int from, int to) {
+        return GeoKernel.nearestVertex(coords, cosLat, from, to, lat, lon);
+    }
+
+    /**
+     * Great-circle miles from vertex i to the given point.
+     */
+    public double milesTo(int i, double lat, double lon) {
+        return GeoKernel.miles(GeoKernel.term(coords, cosLat, i, lat, lon, Math.cos(Math.toRadians(lat))));
+    }
+
+    public int size() {
+        return cumulativeMiles.length;
+    }
+
+    public double lat(int i) {
+        return coords[2 * i];
+    }
+
+    public double lon(int i) {
+        return coords[2 * i + 1];
+    }
+
+    public double[] point(int i) {
+        return new double[]{coords[2 * i], coords[2 * i + 1]};
+    }
+
+    /**
+     * Encode vertices [fromVertex, toVertex) back to Google polyline format.
+     */
+    public String encode(int fromVertex, int toVertex) {
+        return Polyline.encode(coords, fromVertex, toVertex);
+    }
+
+    public double distanceToMiles(int i) {
+        return cumulativeMiles[i];
+    }
+
+    public double totalMiles() {
+        return cumulativeMiles.length == 0 ? 0.0 : cumulativeMiles[cumulativeMiles.length - 1];
+    }
+
+    public double maxSegmentMiles() {
+        return maxSegmentMiles;
+    }
+
+    /**
+     * Last vertex whose along-route distance is within the given range, or 0 if even
+     * the first segment is out of reach.
+     */
+    public int lastIndexWithin(double miles) {
+        int idx = Arrays.binarySearch(cumulativeMiles, miles);
+        if (idx >= 0) {
+            // Several vertices can share a distance (duplicate points); take the last one
+            while (idx + 1 < cumulativeMiles.length && cumulativeMiles[idx + 1] == miles) {
+                idx++;
+            }
+            return idx;
+        }
+        int insertionPoint = -idx - 1;
+        return Math.max(0, insertionPoint - 1);
+    }
+
+    /**
+     * Project each intermediate onto the polyline: the first vertex (from index 1) within
+     * thresholdMiles of it, or -1 if the route never passes that close.
+     */
+    public int[] projectIntermediates(List<FindRequest.LatLng> intermediates, double thresholdMiles) {
+        int[] projected = new int[intermediates.size()];
+        for (int k = 0; k < intermediates.size(); k++) {
+            FindRequest.LatLng intermediate = intermediates.get(k);
+            projected[k] = GeoKernel.firstVertexWithin(coords, cosLat, 1, size() - 1,
+                    intermediate.latitude, intermediate.longitude, thresholdMiles);
+        }
+        return projected;
+    }
+}
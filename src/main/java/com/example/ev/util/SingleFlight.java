@@ -0,0 +1,204 @@
+package com.example.ev.util;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-flight de-duplication of identical work. The first caller for a key runs the work;
+ * callers arriving while it runs join the same pending result instead of repeating it,
+ * waiting at most timeoutMillis. Blocking and non-blocking callers share one flight per key.
+ * Only the work's own outcome is shared: when the leader is interrupted or cancelled by its
+ * caller, the callers still waiting run the work again, one of them as the new leader.
+ * Nothing is kept once the work finishes, so this is not a cache.
+ */
+public class SingleFlight<V> {
+
+    private final String name;
+    private final boolean enabled;
+    private final long timeoutMillis;
+    private final Map<String, Flight<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong joined = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    public SingleFlight(String name, boolean enabled, long timeoutMillis) {
+        this.name = name;
+        this.enabled = enabled;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    private static final class Flight<V> {
+        final CompletableFuture<V> result = new CompletableFuture<>();
+        // Callers still interested in the result; a non-blocking flight is cancelled when it drops to 0
+        final AtomicInteger waiters = new AtomicInteger(1);
+        volatile Disposable subscription;
+
+        boolean join() {
+            return waiters.getAndUpdate(n -> n == 0 ? 0 : n + 1) > 0;
+        }
+    }
+
+    /**
+     * Run the work, or wait for the identical call already in flight. A follower that waits
+     * longer than timeoutMillis gets a {@link TimeoutException}; the leader's error is rethrown as is.
+     */
+    public V execute(String key, Callable<V> work) throws Exception {
+        if (!enabled) {
+            return work.call();
+        }
+        while (true) {
+            Flight<V> mine = new Flight<>();
+            Flight<V> existing = inFlight.putIfAbsent(key, mine);
+            if (existing == null) {
+                leaders.incrementAndGet();
+                try {
+                    V value = work.call();
+                    mine.result.complete(value);
+                    return value;
+                } catch (Exception e) {
+                    if (abandoned(e)) {
+                        // Our caller gave up, the upstream did not fail: waiting callers try again themselves
+                        inFlight.remove(key, mine);
+                        mine.result.cancel(false);
+                    } else {
+                        mine.result.completeExceptionally(e);
+                    }
+                    throw e;
+                } finally {
+                    inFlight.remove(key, mine);
+                }
+            }
+            if (existing.join()) {
+                joined.incrementAndGet();
+                try {
+                    return await(existing);
+                } catch (CancellationException e) {
+                    continue; // The leader was abandoned; start or join a new flight
+                } finally {
+                    leave(key, existing);
+                }
+            }
+            // The flight was abandoned by all its callers; start a new one
+            inFlight.remove(key, existing);
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #execute}. The shared call keeps running while anyone
+     * waits on it and is cancelled once every caller has cancelled. It runs with the first
+     * caller's Reactor context, as the blocking variant runs on the first caller's thread.
+     */
+    public Mono<V> executeReactive(String key, Supplier<Mono<V>> work) {
+        if (!enabled) {
+            return Mono.defer(work);
+        }
+        return Mono.deferContextual(context -> {
+            while (true) {
+                Flight<V> mine = new Flight<>();
+                Flight<V> existing = inFlight.putIfAbsent(key, mine);
+                if (existing == null) {
+                    leaders.incrementAndGet();
+                    mine.subscription = work.get()
+                            .contextWrite(context)
+                            .doFinally(signal -> inFlight.remove(key, mine))
+                            .subscribe(mine.result::complete, mine.result::completeExceptionally,
+                                    () -> mine.result.complete(null));
+                    return waitFor(key, mine, false);
+                }
+                if (existing.join()) {
+                    joined.incrementAndGet();
+                    // A blocking leader that was abandoned cancels the flight; start or join a new one
+                    return waitFor(key, existing, true)
+                            .onErrorResume(CancellationException.class, e -> executeReactive(key, work));
+                }
+                inFlight.remove(key, existing);
+            }
+        });
+    }
+
+    /**
+     * Whether the work failed because its caller interrupted or cancelled it, rather than the upstream.
+     */
+    private static boolean abandoned(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException || cause instanceof InterruptedIOException
+                    || cause instanceof ClosedByInterruptException || cause instanceof CancellationException) {
+                return true;
+            }
+        }
+        return Thread.currentThread().isInterrupted();
+    }
+
+    private V await(Flight<V> flight) throws Exception {
+        try {
+            return flight.result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+            throw timeout();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+        }
+    }
+
+    private Mono<V> waitFor(String key, Flight<V> flight, boolean follower) {
+        Mono<V> result = Mono.fromFuture(flight.result, true);
+        if (follower) {
+            result = result.timeout(Duration.ofMillis(timeoutMillis), Mono.error(() -> {
+                timeouts.incrementAndGet();
+                return timeout();
+            }));
+        }
+        return result.doFinally(signal -> leave(key, flight));
+    }
+
+    private void leave(String key, Flight<V> flight) {
+        if (flight.waiters.decrementAndGet() == 0 && !flight.result.isDone()) {
+            inFlight.remove(key, flight);
+            Disposable subscription = flight.subscription;
+            if (subscription != null) {
+                subscription.dispose();
+            }
+            flight.result.cancel(false);
+        }
+    }
+
+    private TimeoutException timeout() {
+        return new TimeoutException("Timed out after " + timeoutMillis + " ms waiting for in-flight " + name + " call");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    public long getLeaders() {
+        return leaders.get();
+    }
+
+    public long getJoined() {
+        return joined.get();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+}
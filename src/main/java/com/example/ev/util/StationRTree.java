@@ -0,0 +1,191 @@
+package com.example.ev.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Static R-tree over points, bulk-loaded with Sort-Tile-Recursive packing.
+ * All nodes live in primitive arrays: each level stores its node boxes plus the range of
+ * children (or points, for leaves) it covers in the level below. Built once, read-only
+ * afterwards, so it can be queried from any number of threads.
+ */
+public final class StationRTree {
+
+    private static final int NODE_CAPACITY = 16;
+
+    private final double[] lat;     // point coordinates, in packed (leaf) order
+    private final double[] lon;
+    private final int[] pointIds;   // original index of each packed point
+
+    // levels[0] = leaves ... levels[last] = root level
+    private final double[][] levelBoxes;   // minLat, minLon, maxLat, maxLon per node
+    private final int[][] levelStart;      // first child (or point) of each node
+    private final int[][] levelEnd;        // one past the last child (or point)
+
+    public StationRTree(double[] latitudes, double[] longitudes) {
+        int n = latitudes.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        strSort(order, i -> longitudes[i], i -> latitudes[i]);
+
+        lat = new double[n];
+        lon = new double[n];
+        pointIds = new int[n];
+        for (int k = 0; k < n; k++) {
+            lat[k] = latitudes[order[k]];
+            lon[k] = longitudes[order[k]];
+            pointIds[k] = order[k];
+        }
+
+        // Leaf level: consecutive runs of packed points
+        int leafCount = Math.max(1, (n + NODE_CAPACITY - 1) / NODE_CAPACITY);
+        double[] boxes = new double[leafCount * 4];
+        int[] starts = new int[leafCount];
+        int[] ends = new int[leafCount];
+        for (int node = 0; node < leafCount; node++) {
+            starts[node] = node * NODE_CAPACITY;
+            ends[node] = Math.min(n, starts[node] + NODE_CAPACITY);
+            setBox(boxes, node, lat, lon, starts[node], ends[node]);
+        }
+
+        List<double[]> boxLevels = new ArrayList<>();
+        List<int[]> startLevels = new ArrayList<>();
+        List<int[]> endLevels = new ArrayList<>();
+
+        // Build parents until a single root node remains
+        while (true) {
+            int count = starts.length;
+            if (count <= 1) {
+                boxLevels.add(boxes);
+                startLevels.add(starts);
+                endLevels.add(ends);
+                break;
+            }
+            Integer[] nodeOrder = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                nodeOrder[i] = i;
+            }
+            double[] currentBoxes = boxes;
+            strSort(nodeOrder, i -> (currentBoxes[4 * i + 1] + currentBoxes[4 * i + 3]) / 2,
+                    i -> (currentBoxes[4 * i] + currentBoxes[4 * i + 2]) / 2);
+
+            // Reorder this level so each parent covers a contiguous run of children
+            double[] sortedBoxes = new double[count * 4];
+            int[] sortedStarts = new int[count];
+            int[] sortedEnds = new int[count];
+            for (int k = 0; k < count; k++) {
+                int from = nodeOrder[k];
+                System.arraycopy(boxes, 4 * from, sortedBoxes, 4 * k, 4);
+                sortedStarts[k] = starts[from];
+                sortedEnds[k] = ends[from];
+            }
+            boxLevels.add(sortedBoxes);
+            startLevels.add(sortedStarts);
+            endLevels.add(sortedEnds);
+
+            int parentCount = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            double[] parentBoxes = new double[parentCount * 4];
+            int[] parentStarts = new int[parentCount];
+            int[] parentEnds = new int[parentCount];
+            for (int p = 0; p < parentCount; p++) {
+                parentStarts[p] = p * NODE_CAPACITY;
+                parentEnds[p] = Math.min(count, parentStarts[p] + NODE_CAPACITY);
+                double minLat = Double.POSITIVE_INFINITY, minLon = Double.POSITIVE_INFINITY;
+                double maxLat = Double.NEGATIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
+                for (int c = parentStarts[p]; c < parentEnds[p]; c++) {
+                    minLat = Math.min(minLat, sortedBoxes[4 * c]);
+                    minLon = Math.min(minLon, sortedBoxes[4 * c + 1]);
+                    maxLat = Math.max(maxLat, sortedBoxes[4 * c + 2]);
+                    maxLon = Math.max(maxLon, sortedBoxes[4 * c + 3]);
+                }
+                parentBoxes[4 * p] = minLat;
+                parentBoxes[4 * p + 1] = minLon;
+                parentBoxes[4 * p + 2] = maxLat;
+                parentBoxes[4 * p + 3] = maxLon;
+            }
+            boxes = parentBoxes;
+            starts = parentStarts;
+            ends = parentEnds;
+        }
+
+        levelBoxes = boxLevels.toArray(new double[0][]);
+        levelStart = startLevels.toArray(new int[0][]);
+        levelEnd = endLevels.toArray(new int[0][]);
+    }
+
+    public int size() {
+        return lat.length;
+    }
+
+    /**
+     * Report the original index of every point inside the box (inclusive).
+     */
+    public void search(double minLat, double minLon, double maxLat, double maxLon, IntConsumer consumer) {
+        if (lat.length == 0) {
+            return;
+        }
+        int rootLevel = levelBoxes.length - 1;
+        for (int node = 0; node < levelStart[rootLevel].length; node++) {
+            searchNode(rootLevel, node, minLat, minLon, maxLat, maxLon, consumer);
+        }
+    }
+
+    private void searchNode(int level, int node, double minLat, double minLon, double maxLat, double maxLon,
+                            IntConsumer consumer) {
+        double[] boxes = levelBoxes[level];
+        if (boxes[4 * node] > maxLat || boxes[4 * node + 2] < minLat
+                || boxes[4 * node + 1] > maxLon || boxes[4 * node + 3] < minLon) {
+            return;
+        }
+        int start = levelStart[level][node];
+        int end = levelEnd[level][node];
+        if (level == 0) {
+            for (int k = start; k < end; k++) {
+                if (lat[k] >= minLat && lat[k] <= maxLat && lon[k] >= minLon && lon[k] <= maxLon) {
+                    consumer.accept(pointIds[k]);
+                }
+            }
+            return;
+        }
+        for (int child = start; child < end; child++) {
+            searchNode(level - 1, child, minLat, minLon, maxLat, maxLon, consumer);
+        }
+    }
+
+    private static void setBox(double[] boxes, int node, double[] lat, double[] lon, int start, int end) {
+        double minLat = Double.POSITIVE_INFINITY, minLon = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
+        for (int k = start; k < end; k++) {
+            minLat = Math.min(minLat, lat[k]);
+            minLon = Math.min(minLon, lon[k]);
+            maxLat = Math.max(maxLat, lat[k]);
+            maxLon = Math.max(maxLon, lon[k]);
+        }
+        boxes[4 * node] = minLat;
+        boxes[4 * node + 1] = minLon;
+        boxes[4 * node + 2] = maxLat;
+        boxes[4 * node + 3] = maxLon;
+    }
+
+    /**
+     * Sort-Tile-Recursive ordering: sort by x, cut into vertical slices of sqrt(n / capacity)
+     * nodes each, then sort each slice by y.
+     */
+    private static void strSort(Integer[] items, IntToDoubleFunction x,
+                                IntToDoubleFunction y) {
+        int n = items.length;
+        Arrays.sort(items, Comparator.comparingDouble(i -> x.applyAsDouble(i)));
+        int nodeCount = (n + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int sliceCount = (int) Math.ceil(Math.sqrt(nodeCount));
+        int sliceSize = Math.max(1, sliceCount * NODE_CAPACITY);
+        for (int from = 0; from < n; from += sliceSize) {
+            Arrays.sort(items, from, Math.min(n, from + sliceSize), Comparator.comparingDouble(i -> y.applyAsDouble(i)));
+        }
+    }
+}
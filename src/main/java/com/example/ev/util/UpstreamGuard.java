@@ -0,0 +1,300 @@
+package com.example.ev.util;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Tail-latency and failure handling for one upstream, around each call:
+ * <ul>
+ * <li>Hedging: the latency of recent calls is tracked, and a call still outstanding after
+ * their hedgeQuantile (p95 by default, at least minHedgeDelayMillis) gets one duplicate.
+ * Whichever returns first wins and the other is cancelled. Duplicates go through the same
+ * bulkhead, so they are never sent when the upstream is already saturated.</li>
+ * <li>Circuit breaking: failures feed a {@link CircuitBreaker}; while it is open, calls fail
+ * fast instead of waiting for timeouts.</li>
+ * <li>Stale fallback: the last value returned for each key is kept (up to maxStaleEntries,
+ * for maxStaleMillis); when the call fails or the breaker is open, that value is returned
+ * instead, passed through markStale so callers can tell.</li>
+ * </ul>
+ */
+public class UpstreamGuard<V> {
+
+    private static final int LATENCY_WINDOW = 1024;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+    // Recompute the hedge delay after this many new samples
+    private static final int RECOMPUTE_EVERY = 32;
+
+    private final CircuitBreaker breaker;
+    private final ExecutorService executor;
+    private final boolean hedgingEnabled;
+    private final double hedgeQuantile;
+    private final long minHedgeDelayMillis;
+    private final long maxStaleMillis;
+    private final UnaryOperator<V> markStale;
+
+    // Ring of recent call latencies in ms; guarded by itself
+    private final double[] latencies = new double[LATENCY_WINDOW];
+    private int latencyCount;
+    private volatile long hedgeDelayMillis = -1;
+
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong staleServed = new AtomicLong();
+
+    // Last value per key, LRU; guarded by synchronized(lastKnown)
+    private final LinkedHashMap<String, Known<V>> lastKnown;
+
+    private static final class Known<V> {
+        final V value;
+        final long storedAtMillis;
+
+        Known(V value, long storedAtMillis) {
+            this.value = value;
+            this.storedAtMillis = storedAtMillis;
+        }
+    }
+
+    public UpstreamGuard(CircuitBreaker breaker, ExecutorService executor, boolean hedgingEnabled, double hedgeQuantile,
+                         long minHedgeDelayMillis, int maxStaleEntries, long maxStaleMillis, UnaryOperator<V> markStale) {
+        this.breaker = breaker;
+        this.executor = executor;
+        this.hedgingEnabled = hedgingEnabled;
+        this.hedgeQuantile = hedgeQuantile;
+        this.minHedgeDelayMillis = minHedgeDelayMillis;
+        this.maxStaleMillis = maxStaleMillis;
+        this.markStale = markStale;
+        this.lastKnown = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Known<V>> eldest) {
+                return size() > maxStaleEntries;
+            }
+        };
+    }
+
+    /**
+     * Blocking call. A null result counts as a successful call that found nothing; failures
+     * are thrown unless a stale value can be returned instead.
+     */
+    public V call(String key, Callable<V> attempt) throws Exception {
+        if (!breaker.tryAcquire()) {
+            return staleOr(key, new CircuitBreaker.OpenException(breaker.getName()));
+        }
+        V value;
+        try {
+            value = hedged(attempt);
+        } catch (Bulkhead.FullException e) {
+            breaker.onIgnored(); // Our own limit, not the upstream failing
+            return staleOr(key, e);
+        } catch (Exception e) {
+            if (interrupted(e)) {
+                breaker.onIgnored(); // The caller gave up on this call, e.g. a fallback search that was already answered
+                throw e;
+            }
+            breaker.onFailure();
+            return staleOr(key, e);
+        }
+        breaker.onSuccess();
+        remember(key, value);
+        return value;
+    }
+
+    /**
+     * Non-blocking variant of {@link #call}. An empty attempt counts as a successful call
+     * that found nothing. Unlike the blocking variant, a first attempt that fails before the
+     * hedge delay still gets its duplicate, as {@link Mono#firstWithValue} waits for it.
+     */
+    public Mono<V> wrap(String key, Supplier<Mono<V>> attempt) {
+        return Mono.defer(() -> {
+            if (!breaker.tryAcquire()) {
+                return staleOr(key, new CircuitBreaker.OpenException(breaker.getName()), Mono::error);
+            }
+            long delay = hedgeDelayMillis;
+            Mono<Optional<V>> first = timed(attempt);
+            Mono<Optional<V>> call = !hedgingEnabled || delay < 0 ? first : Mono.firstWithValue(first,
+                    Mono.delay(Duration.ofMillis(delay)).then(Mono.defer(() -> {
+                        hedges.incrementAndGet();
+                        return timed(attempt).doOnNext(won -> hedgeWins.incrementAndGet());
+                    })));
+            AtomicInteger outcome = new AtomicInteger();
+            return call
+                    .doOnNext(value -> {
+                        outcome.set(1);
+                        breaker.onSuccess();
+                        remember(key, value.orElse(null));
+                    })
+                    .onErrorResume(e -> {
+                        Throwable cause = Arrays.stream(e.getSuppressed()).findFirst().orElse(e);
+                        outcome.set(1);
+                        if (cause instanceof Bulkhead.FullException) {
+                            breaker.onIgnored();
+                        } else {
+                            breaker.onFailure();
+                        }
+                        return staleOr(key, cause, Mono::error).map(Optional::of);
+                    })
+                    .doFinally(signal -> {
+                        if (outcome.get() == 0) {
+                            breaker.onIgnored(); // Cancelled before an answer
+                        }
+                    })
+                    .flatMap(Mono::justOrEmpty);
+        });
+    }
+
+    private static boolean interrupted(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException) {
+                return true;
+            }
+        }
+        return Thread.currentThread().isInterrupted();
+    }
+
+    private Mono<Optional<V>> timed(Supplier<Mono<V>> attempt) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return attempt.get()
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .doFinally(signal -> recordLatency(start));
+        });
+    }
+
+    private V hedged(Callable<V> attempt) throws Exception {
+        Callable<V> timed = () -> {
+            long start = System.nanoTime();
+            try {
+                return attempt.call();
+            } finally {
+                recordLatency(start);
+            }
+        };
+        long delay = hedgeDelayMillis;
+        if (!hedgingEnabled || delay < 0) {
+            return timed.call();
+        }
+        ExecutorCompletionService<V> race = new ExecutorCompletionService<>(executor);
+        Future<V> primary = race.submit(timed);
+        Future<V> hedge = null;
+        try {
+            Future<V> done = race.poll(delay, TimeUnit.MILLISECONDS);
+            int outstanding = 1;
+            if (done == null) {
+                hedges.incrementAndGet();
+                hedge = race.submit(timed);
+                outstanding = 2;
+                done = race.take();
+            }
+            while (true) {
+                try {
+                    V value = done.get();
+                    if (done == hedge) {
+                        hedgeWins.incrementAndGet();
+                    }
+                    return value;
+                } catch (ExecutionException e) {
+                    if (--outstanding == 0) {
+                        throw e.getCause() instanceof Exception cause ? cause : e;
+                    }
+                    done = race.take(); // The other attempt may still succeed
+                }
+            }
+        } finally {
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Record one attempt's latency; a cancelled attempt records how long it ran, a lower bound.
+     */
+    private void recordLatency(long startNanos) {
+        double millis = (System.nanoTime() - startNanos) / 1e6;
+        synchronized (latencies) {
+            latencies[latencyCount % LATENCY_WINDOW] = millis;
+            latencyCount++;
+            if (latencyCount == MIN_LATENCY_SAMPLES
+                    || latencyCount > MIN_LATENCY_SAMPLES && latencyCount % RECOMPUTE_EVERY == 0) {
+                double[] window = Arrays.copyOf(latencies, Math.min(latencyCount, LATENCY_WINDOW));
+                Arrays.sort(window);
+                double quantile = window[(int) Math.min(window.length - 1, Math.floor(hedgeQuantile * window.length))];
+                hedgeDelayMillis = Math.max(minHedgeDelayMillis, (long) Math.ceil(quantile));
+            }
+        }
+    }
+
+    private void remember(String key, V value) {
+        // An empty answer is not worth serving stale: it would read as a fresh "nothing found"
+        if (value == null || value instanceof Collection<?> empty && empty.isEmpty() || maxStaleMillis <= 0) {
+            return;
+        }
+        synchronized (lastKnown) {
+            lastKnown.put(key, new Known<>(value, System.currentTimeMillis()));
+        }
+    }
+
+    private V staleOr(String key, Exception failure) throws Exception {
+        V stale = stale(key);
+        if (stale == null) {
+            throw failure;
+        }
+        return stale;
+    }
+
+    private Mono<V> staleOr(String key, Throwable failure, Function<Throwable, Mono<V>> otherwise) {
+        V stale = stale(key);
+        return stale != null ? Mono.just(stale) : otherwise.apply(failure);
+    }
+
+    private V stale(String key) {
+        Known<V> known;
+        synchronized (lastKnown) {
+            known = lastKnown.get(key);
+        }
+        if (known == null || System.currentTimeMillis() - known.storedAtMillis > maxStaleMillis) {
+            return null;
+        }
+        staleServed.incrementAndGet();
+        return markStale.apply(known.value);
+    }
+
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    /** Current hedge delay in ms, or -1 while hedging is off or there are too few samples. */
+    public long getHedgeDelayMillis() {
+        return hedgingEnabled ? hedgeDelayMillis : -1;
+    }
+
+    public long getHedges() {
+        return hedges.get();
+    }
+
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    public long getStaleServed() {
+        return staleServed.get();
+    }
+}